@@ -0,0 +1,128 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crafting the polylines: the recursive LineCrafter.CraftConnectedLines(), CraftConnectedLinesIterative()
+ * and CraftConnectedLines(SegmentStore). Crafting uses up the point types, so every invocation works on
+ * fresh copies of the typed lines, which are prepared outside of the measured time.
+ * The recursive variant needs one stack frame per line, therefore the benchmark JVM gets a large stack.
+ * It cannot craft several circles that are not connected to each other and returns null for them (LOOPS).
+ * Such a trial fails in its setup (see RecursionCheck), so that no aborted run is reported next to complete ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xss1g")
+public class CraftingBenchmark {
+
+    @Param({"CHAINS", "GRID", "STARS", "LOOPS", "COMPONENTS"})
+    public LineNetworkGenerator.Shape shape;
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    // lines and points with their types, before any polyline has been crafted
+    private ArrayList<?> starterList;
+    private ArrayList<?> SPandCNandTER;
+    private int[] coordinates;
+
+    @Setup(Level.Trial)
+    public void createLines() {
+        coordinates = LineNetworkGenerator.generate(shape, size, LineNetworkGenerator.DEFAULT_SEED);
+        Object lineCrafter = DrawPlot.newLineCrafter();
+        ArrayList<?> lines = DrawPlot.createStarterList(lineCrafter, LineNetworkGenerator.toRawCoordinates(coordinates));
+        starterList = DrawPlot.getAllPointTypesCounting(lineCrafter, lines);
+        SPandCNandTER = DrawPlot.getAllPointsAndSetStartlistTypes(lineCrafter, starterList);
+    }
+
+    /**
+     * Fresh copies of the lists and a new LineCrafter for every invocation
+     */
+    @State(Scope.Thread)
+    public static class FreshLines {
+
+        private Object lineCrafter;
+        private ArrayList<?> starterList;
+        private ArrayList<?> SPandCNandTER;
+
+        @Setup(Level.Invocation)
+        public void copyLines(CraftingBenchmark benchmark) {
+            lineCrafter = DrawPlot.newLineCrafter();
+            starterList = DrawPlot.deepCopy(benchmark.starterList);
+            // deepCopy() copies lists of point lists, so the list of points is copied as the only element of such a list
+            ArrayList<ArrayList<?>> wrapped = new ArrayList<>();
+            wrapped.add(benchmark.SPandCNandTER);
+            SPandCNandTER = (ArrayList<?>) DrawPlot.deepCopy(wrapped).get(0);
+        }
+    }
+
+    /**
+     * A store with fresh types for every invocation
+     */
+    @State(Scope.Thread)
+    public static class FreshStore {
+
+        private Object lineCrafter;
+        private Object store;
+
+        @Setup(Level.Trial)
+        public void createStore(CraftingBenchmark benchmark) {
+            lineCrafter = DrawPlot.newLineCrafter();
+            store = DrawPlot.storeFromCoordinates(DrawPlot.segmentCoordinates(benchmark.coordinates));
+        }
+
+        @Setup(Level.Invocation)
+        public void assignTypes() {
+            DrawPlot.getAllPointTypes(lineCrafter, store);
+        }
+    }
+
+    /**
+     * Crafts the lines once with the recursive variant before the trial and fails if it returns null
+     */
+    @State(Scope.Benchmark)
+    public static class RecursionCheck {
+
+        @Setup(Level.Trial)
+        public void checkLines(CraftingBenchmark benchmark) {
+            FreshLines lines = new FreshLines();
+            lines.copyLines(benchmark);
+            if (DrawPlot.craftConnectedLines(lines.lineCrafter, lines.starterList, lines.SPandCNandTER) == null) {
+                throw new IllegalStateException("The recursive crafting cannot combine the lines of " + benchmark.shape
+                        + " into polylines");
+            }
+        }
+    }
+
+    @Benchmark
+    public Object craftConnectedLines(FreshLines lines, RecursionCheck check) {
+        return DrawPlot.craftConnectedLines(lines.lineCrafter, lines.starterList, lines.SPandCNandTER);
+    }
+
+    @Benchmark
+    public Object craftConnectedLinesIterative(FreshLines lines) {
+        return DrawPlot.craftConnectedLinesIterative(lines.lineCrafter, lines.starterList, lines.SPandCNandTER);
+    }
+
+    @Benchmark
+    public Object craftConnectedLinesStore(FreshStore store) {
+        return DrawPlot.craftConnectedLines(store.lineCrafter, store.store);
+    }
+}
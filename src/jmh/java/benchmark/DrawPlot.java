@@ -0,0 +1,172 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Access to the classes of the program for the benchmarks.
+ * The program lives in the default package, which cannot be imported, and JMH does not accept benchmarks in the
+ * default package. Therefore the classes are looked up by name once and their methods are called through method
+ * handles. The cost of a call (well below a microsecond) does not matter for operations on thousands of lines.
+ */
+final class DrawPlot {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> INPUT_HANDLER = load("InputHandler");
+    private static final Class<?> LINE_CRAFTER = load("LineCrafter");
+    private static final Class<?> SEGMENT_COORDINATES = load("SegmentCoordinates");
+    private static final Class<?> SEGMENT_STORE = load("SegmentStore");
+    private static final Class<?> POLYLINE_LIST = load("PolylineList");
+    private static final Class<?> POLYLINE_RANKING = load("PolylineRanking");
+
+    private static final MethodHandle NEW_INPUT_HANDLER = constructor(INPUT_HANDLER);
+    private static final MethodHandle NEW_LINE_CRAFTER = constructor(LINE_CRAFTER);
+    private static final MethodHandle NEW_SEGMENT_COORDINATES = constructor(SEGMENT_COORDINATES, int.class);
+    private static final MethodHandle ADD_SEGMENT = virtual(SEGMENT_COORDINATES, "add", void.class, int.class, int.class, int.class, int.class);
+    private static final MethodHandle READ_COORDINATES = virtual(INPUT_HANDLER, "readCoordinates", ArrayList.class, String.class);
+    private static final MethodHandle READ_COORDINATES_MAPPED = virtual(INPUT_HANDLER, "readCoordinatesMapped", SEGMENT_COORDINATES, String.class);
+    private static final MethodHandle CREATE_STARTER_LIST = virtual(LINE_CRAFTER, "createStarterList", ArrayList.class, ArrayList.class);
+    private static final MethodHandle DEEP_COPY = staticMethod(LINE_CRAFTER, "deepCopy", ArrayList.class, ArrayList.class);
+    private static final MethodHandle GET_ALL_POINT_TYPES = virtual(LINE_CRAFTER, "getAllPointTypes", ArrayList.class, ArrayList.class);
+    private static final MethodHandle GET_ALL_POINT_TYPES_COUNTING = virtual(LINE_CRAFTER, "getAllPointTypesCounting", ArrayList.class, ArrayList.class);
+    private static final MethodHandle GET_ALL_POINT_TYPES_STORE = virtual(LINE_CRAFTER, "getAllPointTypes", SEGMENT_STORE, SEGMENT_STORE);
+    private static final MethodHandle GET_ALL_POINTS = virtual(LINE_CRAFTER, "getAllPointsAndSetStartlistTypes", ArrayList.class, ArrayList.class);
+    private static final MethodHandle BUILD_INCIDENCE_INDEX = virtual(LINE_CRAFTER, "buildIncidenceIndex", load("LineIncidenceIndex"), ArrayList.class, ArrayList.class);
+    private static final MethodHandle CRAFT_RECURSIVE = virtual(LINE_CRAFTER, "CraftConnectedLines", ArrayList.class,
+            ArrayList.class, ArrayList.class, ArrayList.class, ArrayList.class);
+    private static final MethodHandle CRAFT_ITERATIVE = virtual(LINE_CRAFTER, "CraftConnectedLinesIterative", ArrayList.class, ArrayList.class, ArrayList.class);
+    private static final MethodHandle CRAFT_STORE = virtual(LINE_CRAFTER, "CraftConnectedLines", POLYLINE_LIST, SEGMENT_STORE);
+    private static final MethodHandle TO_LINIENZUEGE = virtual(POLYLINE_LIST, "toLinienzuege", ArrayList.class, SEGMENT_STORE);
+    private static final MethodHandle STORE_FROM_COORDINATES = staticMethod(SEGMENT_STORE, "fromCoordinates", SEGMENT_STORE, SEGMENT_COORDINATES);
+    private static final MethodHandle SORT_LINIENZUEGE = virtual(LINE_CRAFTER, "sortLinienzuege", Map.class, ArrayList.class);
+    private static final MethodHandle RANK_LINIENZUEGE = virtual(LINE_CRAFTER, "rankLinienzuege", POLYLINE_RANKING, ArrayList.class);
+
+    private DrawPlot() {
+    }
+
+    static Object newInputHandler() {
+        return call(NEW_INPUT_HANDLER);
+    }
+
+    static Object newLineCrafter() {
+        return call(NEW_LINE_CRAFTER);
+    }
+
+    static Object segmentCoordinates(int[] coordinates) {
+        Object segmentCoordinates = call(NEW_SEGMENT_COORDINATES, coordinates.length / 4);
+        for (int i = 0; i < coordinates.length; i += 4) {
+            call(ADD_SEGMENT, segmentCoordinates, coordinates[i], coordinates[i + 1], coordinates[i + 2], coordinates[i + 3]);
+        }
+        return segmentCoordinates;
+    }
+
+    static ArrayList<?> readCoordinates(Object inputHandler, String filename) {
+        return (ArrayList<?>) call(READ_COORDINATES, inputHandler, filename);
+    }
+
+    static Object readCoordinatesMapped(Object inputHandler, String filename) {
+        return call(READ_COORDINATES_MAPPED, inputHandler, filename);
+    }
+
+    static ArrayList<?> createStarterList(Object lineCrafter, ArrayList<ArrayList<Integer>> rawCoordinates) {
+        return (ArrayList<?>) call(CREATE_STARTER_LIST, lineCrafter, rawCoordinates);
+    }
+
+    static ArrayList<?> deepCopy(ArrayList<?> starterList) {
+        return (ArrayList<?>) call(DEEP_COPY, starterList);
+    }
+
+    static ArrayList<?> getAllPointTypes(Object lineCrafter, ArrayList<?> starterList) {
+        return (ArrayList<?>) call(GET_ALL_POINT_TYPES, lineCrafter, starterList);
+    }
+
+    static ArrayList<?> getAllPointTypesCounting(Object lineCrafter, ArrayList<?> starterList) {
+        return (ArrayList<?>) call(GET_ALL_POINT_TYPES_COUNTING, lineCrafter, starterList);
+    }
+
+    static Object getAllPointTypes(Object lineCrafter, Object store) {
+        return call(GET_ALL_POINT_TYPES_STORE, lineCrafter, store);
+    }
+
+    static ArrayList<?> getAllPointsAndSetStartlistTypes(Object lineCrafter, ArrayList<?> starterList) {
+        return (ArrayList<?>) call(GET_ALL_POINTS, lineCrafter, starterList);
+    }
+
+    static Object buildIncidenceIndex(Object lineCrafter, ArrayList<?> starterList, ArrayList<?> SPandCNandTER) {
+        return call(BUILD_INCIDENCE_INDEX, lineCrafter, starterList, SPandCNandTER);
+    }
+
+    static ArrayList<?> craftConnectedLines(Object lineCrafter, ArrayList<?> starterList, ArrayList<?> SPandCNandTER) {
+        return (ArrayList<?>) call(CRAFT_RECURSIVE, lineCrafter, starterList, SPandCNandTER, new ArrayList<>(), new ArrayList<>());
+    }
+
+    static ArrayList<?> craftConnectedLinesIterative(Object lineCrafter, ArrayList<?> starterList, ArrayList<?> SPandCNandTER) {
+        return (ArrayList<?>) call(CRAFT_ITERATIVE, lineCrafter, starterList, SPandCNandTER);
+    }
+
+    static Object craftConnectedLines(Object lineCrafter, Object store) {
+        return call(CRAFT_STORE, lineCrafter, store);
+    }
+
+    static ArrayList<?> toLinienzuege(Object polylineList, Object store) {
+        return (ArrayList<?>) call(TO_LINIENZUEGE, polylineList, store);
+    }
+
+    static Object storeFromCoordinates(Object coordinates) {
+        return call(STORE_FROM_COORDINATES, coordinates);
+    }
+
+    static Map<?, ?> sortLinienzuege(Object lineCrafter, ArrayList<?> linienzuege) {
+        return (Map<?, ?>) call(SORT_LINIENZUEGE, lineCrafter, linienzuege);
+    }
+
+    static Object rankLinienzuege(Object lineCrafter, ArrayList<?> linienzuege) {
+        return call(RANK_LINIENZUEGE, lineCrafter, linienzuege);
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException exception) {
+            throw new IllegalStateException("Class " + name + " of the program is missing", exception);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameterTypes) {
+        try {
+            return LOOKUP.findConstructor(owner, MethodType.methodType(void.class, parameterTypes));
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("No constructor of " + owner.getName(), exception);
+        }
+    }
+
+    private static MethodHandle virtual(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return LOOKUP.findVirtual(owner, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("No method " + owner.getName() + "." + name, exception);
+        }
+    }
+
+    private static MethodHandle staticMethod(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return LOOKUP.findStatic(owner, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("No method " + owner.getName() + "." + name, exception);
+        }
+    }
+
+    private static Object call(MethodHandle method, Object... arguments) {
+        try {
+            return method.invokeWithArguments(arguments);
+        } catch (RuntimeException | Error exception) {
+            throw exception;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+    }
+}
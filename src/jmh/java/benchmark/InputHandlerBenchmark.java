@@ -0,0 +1,64 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading an input file with InputHandler.readCoordinates() and InputHandler.readCoordinatesMapped().
+ * The file is generated once per trial in the temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InputHandlerBenchmark {
+
+    @Param({"CHAINS", "GRID", "STARS", "LOOPS", "COMPONENTS"})
+    public LineNetworkGenerator.Shape shape;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private Path file;
+    private Object inputHandler;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        file = Files.createTempFile("lines-" + shape + "-" + size + "-", ".txt");
+        LineNetworkGenerator.write(LineNetworkGenerator.generate(shape, size, LineNetworkGenerator.DEFAULT_SEED), file);
+        inputHandler = DrawPlot.newInputHandler();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Object readCoordinates() {
+        return DrawPlot.readCoordinates(inputHandler, file.toString());
+    }
+
+    @Benchmark
+    public Object readCoordinatesMapped() {
+        return DrawPlot.readCoordinatesMapped(inputHandler, file.toString());
+    }
+}
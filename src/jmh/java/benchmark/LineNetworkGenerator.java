@@ -0,0 +1,267 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic line networks for the benchmarks. The same shape, size and seed always give the same lines.
+ * The lines are returned as one int array with x1, y1, x2, y2 of each line, in a shuffled order and with
+ * randomly flipped directions, like in a real input file. All coordinates are non-negative.
+ * Structures (chains, stars, loops, components) are placed in separate cells of a large grid, so that they
+ * only touch where the shape intends it.
+ */
+public final class LineNetworkGenerator {
+
+    /**
+     * Shapes of the generated networks
+     */
+    public enum Shape {
+        // long chains of CN points with a SP at each end (several thousand lines each)
+        CHAINS,
+        // one square grid: TER points inside and on the border, CN points in the corners
+        GRID,
+        // TER points with 8 to 64 spokes, each spoke a short chain that ends in a SP
+        STARS,
+        // closed loops of 3 to 64 CN points (circles)
+        LOOPS,
+        // many disconnected short chains of 1 to 6 lines
+        COMPONENTS
+    }
+
+    // seed of the benchmarks, so that all runs measure the same networks
+    public static final long DEFAULT_SEED = 42L;
+    // number of cells per row in which the structures are placed
+    private static final int CELLS_PER_ROW = 1024;
+
+    // x1, y1, x2, y2 of the generated lines
+    private final int[] coordinates;
+    // number of lines generated so far
+    private int count;
+    private final SplittableRandom random;
+
+    private LineNetworkGenerator(int segments, long seed) {
+        coordinates = new int[4 * segments];
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Generates a network
+     * @param shape shape of the network
+     * @param segments number of lines, e.g. 1_000 to 10_000_000
+     * @param seed seed of the random numbers
+     * @return x1, y1, x2, y2 of each line, 4 * segments values
+     */
+    public static int[] generate(Shape shape, int segments, long seed) {
+        LineNetworkGenerator generator = new LineNetworkGenerator(segments, seed);
+        switch (shape) {
+            case CHAINS:
+                generator.chains();
+                break;
+            case GRID:
+                generator.grid();
+                break;
+            case STARS:
+                generator.stars();
+                break;
+            case LOOPS:
+                generator.loops();
+                break;
+            case COMPONENTS:
+                generator.components();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        generator.shuffle();
+        return generator.coordinates;
+    }
+
+    /**
+     * Writes lines in the format of input.txt, one line "x1 y1 x2 y2" per line
+     * @param coordinates x1, y1, x2, y2 of each line
+     * @param file file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(int[] coordinates, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            for (int i = 0; i < coordinates.length; i += 4) {
+                writer.write(coordinates[i] + " " + coordinates[i + 1] + " " + coordinates[i + 2] + " " + coordinates[i + 3]);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Converts lines to the format of InputHandler.readCoordinates()
+     * @param coordinates x1, y1, x2, y2 of each line
+     * @return one list with 4 integers per line
+     */
+    public static ArrayList<ArrayList<Integer>> toRawCoordinates(int[] coordinates) {
+        ArrayList<ArrayList<Integer>> rawCoordinates = new ArrayList<>(coordinates.length / 4);
+        for (int i = 0; i < coordinates.length; i += 4) {
+            ArrayList<Integer> line = new ArrayList<>(4);
+            for (int j = 0; j < 4; j++) {
+                line.add(coordinates[i + j]);
+            }
+            rawCoordinates.add(line);
+        }
+        return rawCoordinates;
+    }
+
+    private boolean isFull() {
+        return count == coordinates.length / 4;
+    }
+
+    private void addLine(int x1, int y1, int x2, int y2) {
+        coordinates[4 * count] = x1;
+        coordinates[4 * count + 1] = y1;
+        coordinates[4 * count + 2] = x2;
+        coordinates[4 * count + 3] = y2;
+        count++;
+    }
+
+    private static int cellX(int cell, int cellSize) {
+        return (cell % CELLS_PER_ROW) * cellSize;
+    }
+
+    private static int cellY(int cell, int cellSize) {
+        return (cell / CELLS_PER_ROW) * cellSize;
+    }
+
+    /**
+     * Chains of 1000 to 100000 lines. The x coordinate grows in every step and the y coordinate
+     * moves randomly within a band, so that no point is visited twice.
+     */
+    private void chains() {
+        for (int band = 0; !isFull(); band++) {
+            int length = 1000 + random.nextInt(99001);
+            int x = 0;
+            int y = band * 1000 + 500;
+            for (int i = 0; i < length && !isFull(); i++) {
+                int nextX = x + 1 + random.nextInt(3);
+                int nextY = Math.max(band * 1000 + 100, Math.min(band * 1000 + 900, y + random.nextInt(21) - 10));
+                addLine(x, y, nextX, nextY);
+                x = nextX;
+                y = nextY;
+            }
+        }
+    }
+
+    /**
+     * Square grid with lines of length 10 between neighbouring grid points, row by row
+     */
+    private void grid() {
+        int segments = coordinates.length / 4;
+        int side = 1;
+        while (2 * side * (side + 1) < segments) {
+            side++;
+        }
+        for (int row = 0; row <= side && !isFull(); row++) {
+            for (int column = 0; column <= side && !isFull(); column++) {
+                if (column < side) {
+                    addLine(column * 10, row * 10, (column + 1) * 10, row * 10);
+                }
+                if (row < side && !isFull()) {
+                    addLine(column * 10, row * 10, column * 10, (row + 1) * 10);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stars with a TER in the center. Each spoke follows a different primitive direction vector,
+     * so that the spokes never meet.
+     */
+    private void stars() {
+        ArrayList<int[]> directions = new ArrayList<>();
+        for (int dx = -5; dx <= 5; dx++) {
+            for (int dy = -5; dy <= 5; dy++) {
+                if ((dx != 0 || dy != 0) && gcd(Math.abs(dx), Math.abs(dy)) == 1) {
+                    directions.add(new int[] {dx, dy});
+                }
+            }
+        }
+        for (int cell = 0; !isFull(); cell++) {
+            int centerX = cellX(cell, 100) + 50;
+            int centerY = cellY(cell, 100) + 50;
+            int degree = 8 + random.nextInt(Math.min(57, directions.size() - 7));
+            for (int spoke = 0; spoke < degree && !isFull(); spoke++) {
+                int[] direction = directions.get(spoke * directions.size() / degree);
+                int length = 1 + random.nextInt(8);
+                for (int step = 0; step < length && !isFull(); step++) {
+                    addLine(centerX + step * direction[0], centerY + step * direction[1],
+                            centerX + (step + 1) * direction[0], centerY + (step + 1) * direction[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Regular polygons with 3 to 64 corners. The last polygon may stay open if the number of lines is reached.
+     */
+    private void loops() {
+        for (int cell = 0; !isFull(); cell++) {
+            int corners = 3 + random.nextInt(62);
+            double radius = 10.0 * corners;
+            int centerX = cellX(cell, 1500) + 750;
+            int centerY = cellY(cell, 1500) + 750;
+            for (int corner = 0; corner < corners && !isFull(); corner++) {
+                double angle = 2 * Math.PI * corner / corners;
+                double nextAngle = 2 * Math.PI * (corner + 1) / corners;
+                addLine((int) Math.round(centerX + radius * Math.cos(angle)), (int) Math.round(centerY + radius * Math.sin(angle)),
+                        (int) Math.round(centerX + radius * Math.cos(nextAngle)), (int) Math.round(centerY + radius * Math.sin(nextAngle)));
+            }
+        }
+    }
+
+    /**
+     * Short chains of 1 to 6 lines, each in its own cell
+     */
+    private void components() {
+        for (int cell = 0; !isFull(); cell++) {
+            int x = cellX(cell, 100) + 10;
+            int y = cellY(cell, 100) + 50;
+            int length = 1 + random.nextInt(6);
+            for (int i = 0; i < length && !isFull(); i++) {
+                int nextX = x + 1 + random.nextInt(10);
+                int nextY = y + random.nextInt(11) - 5;
+                addLine(x, y, nextX, nextY);
+                x = nextX;
+                y = nextY;
+            }
+        }
+    }
+
+    /**
+     * Shuffles the lines and flips the direction of about half of them
+     */
+    private void shuffle() {
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            for (int k = 0; k < 4; k++) {
+                int swap = coordinates[4 * i + k];
+                coordinates[4 * i + k] = coordinates[4 * j + k];
+                coordinates[4 * j + k] = swap;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (random.nextBoolean()) {
+                int x = coordinates[4 * i];
+                int y = coordinates[4 * i + 1];
+                coordinates[4 * i] = coordinates[4 * i + 2];
+                coordinates[4 * i + 1] = coordinates[4 * i + 3];
+                coordinates[4 * i + 2] = x;
+                coordinates[4 * i + 3] = y;
+            }
+        }
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,88 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assigning the point types: LineCrafter.getAllPointTypes() (quadratic), getAllPointTypesCounting(),
+ * getAllPointTypes(SegmentStore) and getAllPointsAndSetStartlistTypes() (quadratic).
+ * The default sizes are small because of the quadratic methods, larger sizes can be selected with -p size=...
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PointTypingBenchmark {
+
+    @Param({"CHAINS", "GRID", "STARS", "LOOPS", "COMPONENTS"})
+    public LineNetworkGenerator.Shape shape;
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private Object lineCrafter;
+    // lines without types
+    private ArrayList<?> starterList;
+    // lines with types, as input for getAllPointsAndSetStartlistTypes()
+    private ArrayList<?> typedStarterList;
+    // the same lines in a store
+    private Object store;
+
+    @Setup(Level.Trial)
+    public void createLines() {
+        int[] coordinates = LineNetworkGenerator.generate(shape, size, LineNetworkGenerator.DEFAULT_SEED);
+        lineCrafter = DrawPlot.newLineCrafter();
+        starterList = DrawPlot.createStarterList(lineCrafter, LineNetworkGenerator.toRawCoordinates(coordinates));
+        typedStarterList = DrawPlot.getAllPointTypesCounting(lineCrafter, DrawPlot.deepCopy(starterList));
+        store = DrawPlot.storeFromCoordinates(DrawPlot.segmentCoordinates(coordinates));
+    }
+
+    /**
+     * getAllPointsAndSetStartlistTypes() changes the types of the lines, so it gets a fresh copy every time
+     */
+    @State(Scope.Thread)
+    public static class FreshLines {
+
+        private ArrayList<?> typedStarterList;
+
+        @Setup(Level.Invocation)
+        public void copyTypedLines(PointTypingBenchmark benchmark) {
+            typedStarterList = DrawPlot.deepCopy(benchmark.typedStarterList);
+        }
+    }
+
+    @Benchmark
+    public Object getAllPointTypes() {
+        return DrawPlot.getAllPointTypes(lineCrafter, starterList);
+    }
+
+    @Benchmark
+    public Object getAllPointTypesCounting() {
+        return DrawPlot.getAllPointTypesCounting(lineCrafter, starterList);
+    }
+
+    @Benchmark
+    public Object getAllPointTypesStore() {
+        return DrawPlot.getAllPointTypes(lineCrafter, store);
+    }
+
+    @Benchmark
+    public Object getAllPointsAndSetStartlistTypes(FreshLines lines) {
+        return DrawPlot.getAllPointsAndSetStartlistTypes(lineCrafter, lines.typedStarterList);
+    }
+}
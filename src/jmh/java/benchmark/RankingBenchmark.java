@@ -0,0 +1,58 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting the crafted polylines by their length with LineCrafter.sortLinienzuege() and rankLinienzuege().
+ * The polylines are crafted once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankingBenchmark {
+
+    @Param({"CHAINS", "GRID", "STARS", "LOOPS", "COMPONENTS"})
+    public LineNetworkGenerator.Shape shape;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private Object lineCrafter;
+    private ArrayList<?> linienzuege;
+
+    @Setup(Level.Trial)
+    public void craftPolylines() {
+        int[] coordinates = LineNetworkGenerator.generate(shape, size, LineNetworkGenerator.DEFAULT_SEED);
+        lineCrafter = DrawPlot.newLineCrafter();
+        Object store = DrawPlot.storeFromCoordinates(DrawPlot.segmentCoordinates(coordinates));
+        DrawPlot.getAllPointTypes(lineCrafter, store);
+        linienzuege = DrawPlot.toLinienzuege(DrawPlot.craftConnectedLines(lineCrafter, store), store);
+    }
+
+    @Benchmark
+    public Object sortLinienzuege() {
+        return DrawPlot.sortLinienzuege(lineCrafter, linienzuege);
+    }
+
+    @Benchmark
+    public Object rankLinienzuege() {
+        return DrawPlot.rankLinienzuege(lineCrafter, linienzuege);
+    }
+}
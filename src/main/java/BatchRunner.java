@@ -0,0 +1,325 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Processes many input files in one JVM: each file is read, crafted and ranked like with Main --store,
+ * and its ranked polylines are written to a result file in the output directory.
+ * The files are processed concurrently on a fixed number of threads. Before a file is started, its memory is
+ * estimated from the file size and taken from a memory budget, so that large files wait until enough memory
+ * is free instead of running out of memory together. A file that is larger than the whole budget runs alone.
+ * At the end, timings.csv in the output directory lists the lines, polylines and the time of each phase per file.
+ * A file that cannot be processed is reported and listed as failed, the other files are processed anyway.
+ * Usage: java BatchRunner --output DIR [--threads N] [--memory MB] FILE|DIR|@LIST ...
+ * A directory stands for all files in it, @LIST for a text file with one path per line.
+ */
+public class BatchRunner {
+
+    // estimated memory per byte of input file, for the lines, the points and the Point objects of the polylines
+    private static final int MEMORY_PER_INPUT_BYTE = 10;
+
+    // directory for the result files and timings.csv
+    private final Path outputDirectory;
+    // number of files processed at the same time
+    private final int threads;
+    // memory budget in KB, the permits are taken by the running files
+    private final int budgetKilobytes;
+    private final Semaphore memory;
+
+    /**
+     * Creates a batch runner
+     * @param outputDirectory directory for the result files and timings.csv, created if it does not exist
+     * @param threads number of files processed at the same time
+     * @param budgetBytes memory for all running files together in bytes
+     */
+    public BatchRunner(Path outputDirectory, int threads, long budgetBytes) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, but is " + threads);
+        }
+        this.outputDirectory = outputDirectory;
+        this.threads = threads;
+        this.budgetKilobytes = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / 1024));
+        this.memory = new Semaphore(budgetKilobytes, true);
+    }
+
+    public static void main(String[] args) {
+        Path outputDirectory = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        // by default three quarters of the heap
+        long budgetBytes = Runtime.getRuntime().maxMemory() / 4 * 3;
+        List<Path> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--output") && i + 1 < args.length) {
+                    outputDirectory = Paths.get(args[++i]);
+                } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--memory") && i + 1 < args.length) {
+                    budgetBytes = Long.parseLong(args[++i]) * 1024 * 1024;
+                } else {
+                    addInputs(args[i], inputs);
+                }
+            }
+        } catch (NumberFormatException | IOException exception) {
+            System.err.println("Invalid arguments: " + exception.getMessage());
+            exception.printStackTrace();
+            return;
+        }
+        if (outputDirectory == null || inputs.isEmpty()) {
+            System.err.println("Usage: java BatchRunner --output DIR [--threads N] [--memory MB] FILE|DIR|@LIST ...");
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            List<FileResult> results = new BatchRunner(outputDirectory, threads, budgetBytes).run(inputs);
+            long failed = results.stream().filter(result -> result.failure != null).count();
+            System.out.println(results.size() + " files have been processed in " + (System.nanoTime() - start) / 1_000_000
+                    + " ms, " + failed + " failed. Timings: " + outputDirectory.resolve("timings.csv"));
+        } catch (IOException IOexception) {
+            System.err.println("Could not write to the output directory ! " + outputDirectory);
+            IOexception.printStackTrace();
+        }
+    }
+
+    /**
+     * Adds the input files of one argument
+     * @param argument a file, a directory (all regular files in it, sorted by name) or @LIST (one path per line)
+     * @param inputs receives the files
+     * @throws IOException if a directory or list cannot be read
+     */
+    private static void addInputs(String argument, List<Path> inputs) throws IOException {
+        if (argument.startsWith("@")) {
+            for (String line : Files.readAllLines(Paths.get(argument.substring(1)), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    inputs.add(Paths.get(line.trim()));
+                }
+            }
+            return;
+        }
+        Path path = Paths.get(argument);
+        if (!Files.isDirectory(path)) {
+            inputs.add(path);
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> directory = Files.newDirectoryStream(path, Files::isRegularFile)) {
+            directory.forEach(files::add);
+        }
+        Collections.sort(files);
+        inputs.addAll(files);
+    }
+
+    /**
+     * Processes all files and writes timings.csv
+     * @param inputs input files, text or binary segment files (see SegmentFile)
+     * @return result of each file, in the order of the inputs
+     * @throws IOException if the output directory or timings.csv cannot be written
+     */
+    public List<FileResult> run(List<Path> inputs) throws IOException {
+        Files.createDirectories(outputDirectory);
+        List<Path> resultFiles = resultFiles(inputs);
+
+        // Java 11 has no virtual threads, so a fixed pool of platform threads bounds the concurrency.
+        // Each task waits for its share of the memory budget before it reads its file.
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<FileResult>> futures = new ArrayList<>(inputs.size());
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                Path input = inputs.get(i);
+                Path resultFile = resultFiles.get(i);
+                futures.add(executor.submit(() -> processWithBudget(input, resultFile)));
+            }
+            List<FileResult> results = new ArrayList<>(inputs.size());
+            for (Future<FileResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException exception) {
+                    // processWithBudget() catches all exceptions, only errors like OutOfMemoryError get here
+                    throw new IllegalStateException(exception.getCause());
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the batch", exception);
+                }
+            }
+            writeTimings(results);
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Chooses a result file name for each input: its file name with .polylines.txt, numbered if names repeat
+     * @param inputs input files
+     * @return result file for each input
+     */
+    private List<Path> resultFiles(List<Path> inputs) {
+        Set<String> usedNames = new HashSet<>();
+        List<Path> resultFiles = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            String name = inputs.get(i).getFileName() + ".polylines.txt";
+            if (!usedNames.add(name)) {
+                name = inputs.get(i).getFileName() + "-" + (i + 1) + ".polylines.txt";
+                usedNames.add(name);
+            }
+            resultFiles.add(outputDirectory.resolve(name));
+        }
+        return resultFiles;
+    }
+
+    /**
+     * Processes one file after its estimated memory is available in the budget
+     * @param input input file
+     * @param resultFile file for the ranked polylines
+     * @return result with timings, or with the failure
+     */
+    private FileResult processWithBudget(Path input, Path resultFile) throws InterruptedException {
+        FileResult result = new FileResult(input);
+        int kilobytes = budgetKilobytes;
+        try {
+            kilobytes = (int) Math.min(budgetKilobytes, Math.max(1, Files.size(input) * MEMORY_PER_INPUT_BYTE / 1024));
+        } catch (IOException IOexception) {
+            // the file cannot be read, which is reported by process()
+        }
+        long waitStart = System.nanoTime();
+        memory.acquire(kilobytes);
+        result.waitNanos = System.nanoTime() - waitStart;
+        try {
+            process(input, resultFile, result);
+        } catch (RuntimeException | IOException exception) {
+            System.err.println("File could not be processed ! " + input);
+            exception.printStackTrace();
+            result.failure = exception.toString();
+        } finally {
+            memory.release(kilobytes);
+        }
+        return result;
+    }
+
+    /**
+     * Reads, crafts and ranks the lines of one file and writes the ranked polylines
+     * @param input input file
+     * @param resultFile file for the ranked polylines
+     * @param result receives the counts and timings
+     * @throws IOException if the file cannot be read or the result cannot be written
+     */
+    private void process(Path input, Path resultFile, FileResult result) throws IOException {
+        long start = System.nanoTime();
+        if (!Files.isReadable(input)) {
+            throw new IOException("File cannot be read: " + input);
+        }
+        SegmentCoordinates coordinates = new InputHandler().readCoordinatesMapped(input.toString());
+        SegmentStore store = SegmentStore.fromCoordinates(coordinates);
+        result.lines = coordinates.size();
+        result.malformedLines = coordinates.getMalformedLines().size();
+        coordinates = null;
+        long read = System.nanoTime();
+
+        // a new LineCrafter per file, because a LineCrafter keeps state between its calls
+        LineCrafter lineCrafter = new LineCrafter();
+        lineCrafter.getAllPointTypes(store);
+        PolylineList polylines = lineCrafter.CraftConnectedLines(store);
+        ArrayList<ArrayList<Point>> linienzuege = polylines.toLinienzuege(store);
+        PolylineRanking ranking = lineCrafter.rankLinienzuege(linienzuege);
+        result.polylines = ranking.size();
+        long crafted = System.nanoTime();
+
+        StringBuilder text = new StringBuilder();
+        try (BufferedWriter writer = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8)) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                text.setLength(0);
+                PrintingPolylineSink.appendPolyline(text, rank + 1, ranking.linienzugAt(rank));
+                writer.append(text);
+            }
+        }
+        long written = System.nanoTime();
+
+        result.readNanos = read - start;
+        result.craftNanos = crafted - read;
+        result.writeNanos = written - crafted;
+    }
+
+    /**
+     * Writes the results of all files to timings.csv, times in milliseconds
+     * @param results result of each file
+     * @throws IOException if the file cannot be written
+     */
+    private void writeTimings(List<FileResult> results) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(outputDirectory.resolve("timings.csv"), StandardCharsets.UTF_8)) {
+            writer.write("file,lines,malformedLines,polylines,waitMillis,readMillis,craftMillis,writeMillis,status");
+            writer.newLine();
+            for (FileResult result : results) {
+                writer.write(csvField(result.input.toString()) + "," + result.lines + "," + result.malformedLines + ","
+                        + result.polylines + "," + millis(result.waitNanos) + "," + millis(result.readNanos) + ","
+                        + millis(result.craftNanos) + "," + millis(result.writeNanos) + ","
+                        + (result.failure == null ? "ok" : csvField("failed: " + result.failure)));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Counts and timings of one processed file
+     */
+    public static class FileResult {
+
+        private final Path input;
+        private int lines;
+        private int malformedLines;
+        private int polylines;
+        // time waiting for the memory budget
+        private long waitNanos;
+        // time for reading the file into the SegmentStore
+        private long readNanos;
+        // time for typing, crafting and ranking
+        private long craftNanos;
+        // time for writing the result file
+        private long writeNanos;
+        // description of the problem if the file could not be processed, otherwise null
+        private String failure;
+
+        FileResult(Path input) {
+            this.input = input;
+        }
+
+        public Path getInput() {
+            return input;
+        }
+
+        public int getPolylines() {
+            return polylines;
+        }
+
+        public String getFailure() {
+            return failure;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import org.knowm.xchart.BitmapEncoder;
+import org.knowm.xchart.VectorGraphicsEncoder;
+import org.knowm.xchart.XYChart;
+import org.knowm.xchart.XYChartBuilder;
+import org.knowm.xchart.XYSeries;
+import org.knowm.xchart.style.markers.SeriesMarkers;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Renders the polylines directly to an image file, without a window. This also works on servers without
+ * a display (java.awt.headless=true), e.g. in a batch job.
+ * Instead of one series per polyline, the polylines are packed into a few series (colour buckets):
+ * polyline i goes into bucket i % bucketCount, and the polylines of a bucket are separated by a gap
+ * (a point with y = NaN, which XChart does not connect). Each polyline is decimated to the image size
+ * beforehand (see PolylineDecimator). Therefore the rendering cost depends on the image size and the
+ * number of buckets, but not on the number of polylines.
+ */
+public class ChartExporter {
+
+    // default size of the image in pixels
+    public static final int DEFAULT_WIDTH = 1200;
+    public static final int DEFAULT_HEIGHT = 900;
+    // default number of series (colours) in the image
+    public static final int DEFAULT_BUCKETS = 8;
+    // maximal distance in pixels of a dropped point to the drawn polyline
+    private static final double TOLERANCE_PIXELS = 0.5;
+
+    /**
+     * Renders the polylines in the default size and colours to a PNG or SVG file
+     * @param linienzuege 2d Array of line compositions (returned by LineCrafter Class)
+     * @param fileName name of the image file, the format is taken from the extension (.png or .svg)
+     * @throws IOException if the file cannot be written
+     */
+    public static void exportChart(ArrayList<ArrayList<Point>> linienzuege, String fileName) throws IOException {
+        exportChart(linienzuege, fileName, DEFAULT_WIDTH, DEFAULT_HEIGHT, DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Renders the polylines to a PNG or SVG file
+     * @param linienzuege 2d Array of line compositions (returned by LineCrafter Class)
+     * @param fileName name of the image file, the format is taken from the extension (.png or .svg)
+     * @param width width of the image in pixels
+     * @param height height of the image in pixels
+     * @param bucketCount number of series (colours) the polylines are packed into
+     * @throws IOException if the file cannot be written
+     */
+    public static void exportChart(ArrayList<ArrayList<Point>> linienzuege, String fileName, int width, int height, int bucketCount) throws IOException {
+        XYChart chart = createMergedChart(linienzuege, width, height, bucketCount);
+        String lowerCaseName = fileName.toLowerCase();
+        if (lowerCaseName.endsWith(".png")) {
+            BitmapEncoder.saveBitmap(chart, fileName, BitmapEncoder.BitmapFormat.PNG);
+        } else if (lowerCaseName.endsWith(".svg")) {
+            VectorGraphicsEncoder.saveVectorGraphic(chart, fileName, VectorGraphicsEncoder.VectorGraphicsFormat.SVG);
+        } else {
+            throw new IllegalArgumentException("Unknown image format of " + fileName + ", expected .png or .svg");
+        }
+    }
+
+    /**
+     * Creates a chart in which the polylines are packed into a few series
+     * @param linienzuege 2d Array of line compositions (returned by LineCrafter Class)
+     * @param width width of the chart in pixels
+     * @param height height of the chart in pixels
+     * @param bucketCount number of series (colours) the polylines are packed into
+     * @return chart with at most bucketCount series
+     */
+    public static XYChart createMergedChart(ArrayList<ArrayList<Point>> linienzuege, int width, int height, int bucketCount) {
+        if (bucketCount < 1) {
+            throw new IllegalArgumentException("bucketCount must be at least 1, but is " + bucketCount);
+        }
+
+        // range of all points, to decimate the polylines for the whole image
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (ArrayList<Point> linienzug : linienzuege) {
+            for (Point point : linienzug) {
+                minX = Math.min(minX, point.getX());
+                maxX = Math.max(maxX, point.getX());
+                minY = Math.min(minY, point.getY());
+                maxY = Math.max(maxY, point.getY());
+            }
+        }
+        PolylineDecimator decimator = new PolylineDecimator(minX, maxX, minY, maxY, width, height, TOLERANCE_PIXELS);
+
+        // decimate each polyline and append it to its bucket, separated from the previous one by a gap
+        MergedSeries[] buckets = new MergedSeries[Math.min(bucketCount, Math.max(1, linienzuege.size()))];
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            buckets[bucket] = new MergedSeries();
+        }
+        for (int i = 0; i < linienzuege.size(); i++) {
+            ArrayList<Point> linienzug = linienzuege.get(i);
+            double[] x = new double[linienzug.size()];
+            double[] y = new double[linienzug.size()];
+            for (int j = 0; j < linienzug.size(); j++) {
+                x[j] = linienzug.get(j).getX();
+                y[j] = linienzug.get(j).getY();
+            }
+            double[][] decimated = decimator.decimate(x, y);
+            buckets[i % buckets.length].append(decimated[0], decimated[1]);
+        }
+
+        XYChart chart = new XYChartBuilder().width(width).height(height).title("Linienzuege").xAxisTitle("X").yAxisTitle("Y").build();
+        chart.getStyler().setDefaultSeriesRenderStyle(XYSeries.XYSeriesRenderStyle.Line);
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            XYSeries series = chart.addSeries(seriesName(bucket, buckets.length, linienzuege.size()), buckets[bucket].getX(), buckets[bucket].getY());
+            series.setMarker(SeriesMarkers.NONE);
+        }
+        return chart;
+    }
+
+    /**
+     * Names a series after the polylines it contains, e.g. "Linienzug 2, 10, 18, ..." for the second of 8 buckets
+     * @param bucket number of the bucket
+     * @param bucketCount number of buckets
+     * @param polylineCount number of polylines
+     * @return name of the series
+     */
+    private static String seriesName(int bucket, int bucketCount, int polylineCount) {
+        if (polylineCount <= bucket + bucketCount) {
+            return "Linienzug " + (bucket + 1);
+        }
+        return "Linienzug " + (bucket + 1) + ", " + (bucket + bucketCount + 1) + ", ...";
+    }
+
+    /**
+     * Coordinates of several polylines in one series, separated by gaps
+     */
+    private static class MergedSeries {
+
+        private double[] x = new double[64];
+        private double[] y = new double[64];
+        private int size;
+
+        /**
+         * Appends a polyline, with a gap before it if it is not the first one
+         * @param polylineX x coordinates of the polyline
+         * @param polylineY y coordinates of the polyline
+         */
+        void append(double[] polylineX, double[] polylineY) {
+            if (polylineX.length == 0) {
+                return;
+            }
+            int needed = size + polylineX.length + 1;
+            if (needed > x.length) {
+                x = Arrays.copyOf(x, Math.max(needed, x.length * 2));
+                y = Arrays.copyOf(y, x.length);
+            }
+            if (size > 0) {
+                x[size] = polylineX[0];
+                y[size] = Double.NaN;
+                size++;
+            }
+            System.arraycopy(polylineX, 0, x, size, polylineX.length);
+            System.arraycopy(polylineY, 0, y, size, polylineY.length);
+            size += polylineX.length;
+        }
+
+        /**
+         * Getter for the x coordinates, XChart needs at least one point
+         * @return x coordinates of all points and gaps
+         */
+        double[] getX() {
+            return size == 0 ? new double[] {0} : Arrays.copyOf(x, size);
+        }
+
+        /**
+         * Getter for the y coordinates, XChart needs at least one point
+         * @return y coordinates of all points and gaps
+         */
+        double[] getY() {
+            return size == 0 ? new double[] {Double.NaN} : Arrays.copyOf(y, size);
+        }
+    }
+}
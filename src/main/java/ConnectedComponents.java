@@ -0,0 +1,160 @@
+import java.util.Arrays;
+
+/**
+ * Splits lines into connected components. Two lines belong to the same component if they are connected
+ * through a chain of lines that share their points. Polylines never leave their component, so the
+ * components can be crafted independently of each other (see LineCrafter.CraftConnectedLinesParallel()).
+ * The components are found with union-find over the point ids (union by size, path halving).
+ * They are numbered in the order of their first line, and the lines and points of each component are kept
+ * in ascending order of their ids. Therefore the result is the same for every run.
+ */
+public class ConnectedComponents {
+
+    // number of components
+    private final int count;
+    // lines of component c are lines[lineOffsets[c]] to lines[lineOffsets[c+1]-1]
+    private final int[] lineOffsets;
+    private final int[] lines;
+    // points of component c are points[pointOffsets[c]] to points[pointOffsets[c+1]-1]
+    private final int[] pointOffsets;
+    private final int[] points;
+
+    /**
+     * Finds the connected components of lines that are given by the ids of their two points.
+     * @param lineStart id of the first point of each line
+     * @param lineEnd id of the second point of each line
+     * @param lineCount number of lines, the first lineCount entries of the arrays are used
+     * @param pointCount number of points, point ids range from 0 to pointCount-1
+     */
+    public ConnectedComponents(int[] lineStart, int[] lineEnd, int lineCount, int pointCount) {
+
+        // union-find over the points: every line connects its two points
+        int[] parent = new int[pointCount];
+        int[] size = new int[pointCount];
+        for (int id = 0; id < pointCount; id++) {
+            parent[id] = id;
+            size[id] = 1;
+        }
+        for (int line = 0; line < lineCount; line++) {
+            int rootA = find(parent, lineStart[line]);
+            int rootB = find(parent, lineEnd[line]);
+            if (rootA != rootB) {
+                if (size[rootA] < size[rootB]) {
+                    int swap = rootA;
+                    rootA = rootB;
+                    rootB = swap;
+                }
+                parent[rootB] = rootA;
+                size[rootA] += size[rootB];
+            }
+        }
+
+        // number the components in the order of their first line (the size array is reused for the numbers)
+        int[] componentOfRoot = size;
+        Arrays.fill(componentOfRoot, -1);
+        int[] componentOfLine = new int[lineCount];
+        int components = 0;
+        for (int line = 0; line < lineCount; line++) {
+            int root = find(parent, lineStart[line]);
+            if (componentOfRoot[root] < 0) {
+                componentOfRoot[root] = components++;
+            }
+            componentOfLine[line] = componentOfRoot[root];
+        }
+        count = components;
+
+        // group the lines by component, ascending within each component
+        lineOffsets = new int[count + 1];
+        for (int line = 0; line < lineCount; line++) {
+            lineOffsets[componentOfLine[line] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            lineOffsets[c + 1] += lineOffsets[c];
+        }
+        lines = new int[lineCount];
+        int[] fill = Arrays.copyOf(lineOffsets, count);
+        for (int line = 0; line < lineCount; line++) {
+            lines[fill[componentOfLine[line]]++] = line;
+        }
+
+        // group the points by component, ascending within each component. Points without lines are left out.
+        pointOffsets = new int[count + 1];
+        int[] componentOfPoint = new int[pointCount];
+        for (int id = 0; id < pointCount; id++) {
+            componentOfPoint[id] = componentOfRoot[find(parent, id)];
+            if (componentOfPoint[id] >= 0) {
+                pointOffsets[componentOfPoint[id] + 1]++;
+            }
+        }
+        for (int c = 0; c < count; c++) {
+            pointOffsets[c + 1] += pointOffsets[c];
+        }
+        points = new int[pointOffsets[count]];
+        fill = Arrays.copyOf(pointOffsets, count);
+        for (int id = 0; id < pointCount; id++) {
+            if (componentOfPoint[id] >= 0) {
+                points[fill[componentOfPoint[id]]++] = id;
+            }
+        }
+    }
+
+    /**
+     * Finds the root of a point and shortens the path to it on the way (path halving).
+     * @param parent parent of each point in the union-find forest
+     * @param id id of the point
+     * @return id of the root
+     */
+    private static int find(int[] parent, int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    /**
+     * Getter for the number of components
+     * @return number of components
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Getter for the number of lines of a component
+     * @param component number of the component
+     * @return number of lines
+     */
+    public int lineCount(int component) {
+        return lineOffsets[component + 1] - lineOffsets[component];
+    }
+
+    /**
+     * Getter for a line of a component
+     * @param component number of the component
+     * @param position position of the line within the component
+     * @return id of the line
+     */
+    public int line(int component, int position) {
+        return lines[lineOffsets[component] + position];
+    }
+
+    /**
+     * Getter for the number of points of a component
+     * @param component number of the component
+     * @return number of points
+     */
+    public int pointCount(int component) {
+        return pointOffsets[component + 1] - pointOffsets[component];
+    }
+
+    /**
+     * Getter for a point of a component
+     * @param component number of the component
+     * @param position position of the point within the component
+     * @return id of the point
+     */
+    public int point(int component, int position) {
+        return points[pointOffsets[component] + position];
+    }
+}
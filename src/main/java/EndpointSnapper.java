@@ -0,0 +1,179 @@
+import java.util.Arrays;
+
+/**
+ * Snaps endpoints of lines that are meant to be the same point, but differ by a few units in the input data.
+ * With exact coordinates, such endpoints become separate SP points, and the network falls apart into many
+ * short polylines. After snapping, they are one point with the right connectivity, so that getAllPointTypes()
+ * assigns the intended CN and TER types.
+ * All points within the tolerance (Euclidean distance) of each other are joined into one group, also over
+ * several steps (union-find). Each group is replaced by its point with the most line ends, on a tie by the
+ * smallest x and then y coordinate, so that the snapped points always are points of the input data.
+ * To find the pairs within the tolerance without comparing all points with each other, the points are sorted
+ * into a uniform grid with cells of the size of the tolerance, and each point is only compared with the points
+ * in its own and the 8 neighbouring cells. For inputs without dense clusters this runs in linear time.
+ * The tolerance should be smaller than the shortest intended line. A line whose two endpoints are snapped
+ * together is dropped. The numbers of snapped points and dropped lines are recorded in RunMetrics.
+ */
+public class EndpointSnapper {
+
+    private EndpointSnapper() {
+    }
+
+    /**
+     * Snaps the endpoints of the lines to canonical points
+     * @param coordinates lines of the input data
+     * @param tolerance maximal distance of two endpoints that are snapped together, 0 for no snapping
+     * @return new coordinates with the snapped endpoints, or the given coordinates if the tolerance is 0
+     */
+    public static SegmentCoordinates snap(SegmentCoordinates coordinates, int tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("tolerance must not be negative, but is " + tolerance);
+        }
+        if (tolerance == 0) {
+            return coordinates;
+        }
+        RunMetrics.Phase snappingPhase = RunMetrics.startPhase("snapping");
+        try {
+            int lineCount = coordinates.size();
+
+            // distinct endpoints, the count of each point is its number of line ends
+            PointKeyTable points = new PointKeyTable(2 * lineCount);
+            int[] startIds = new int[lineCount];
+            int[] endIds = new int[lineCount];
+            for (int line = 0; line < lineCount; line++) {
+                startIds[line] = points.add(Point.packKey(coordinates.getX1(line), coordinates.getY1(line)));
+                endIds[line] = points.add(Point.packKey(coordinates.getX2(line), coordinates.getY2(line)));
+            }
+            int pointCount = points.size();
+
+            // grid: the points of cell c are cellPoints[cellStart[c]] to cellPoints[cellStart[c+1]-1]
+            PointKeyTable cells = new PointKeyTable(pointCount);
+            int[] cellOf = new int[pointCount];
+            for (int id = 0; id < pointCount; id++) {
+                cellOf[id] = cells.add(cellKey(points.key(id), 0, 0, tolerance));
+            }
+            int[] cellStart = new int[cells.size() + 1];
+            for (int cell = 0; cell < cells.size(); cell++) {
+                cellStart[cell + 1] = cellStart[cell] + cells.count(cell);
+            }
+            int[] cellFill = new int[cells.size()];
+            int[] cellPoints = new int[pointCount];
+            for (int id = 0; id < pointCount; id++) {
+                cellPoints[cellStart[cellOf[id]] + cellFill[cellOf[id]]++] = id;
+            }
+
+            // join all pairs of points within the tolerance, each pair is checked once (from the smaller id)
+            int[] parent = new int[pointCount];
+            for (int id = 0; id < pointCount; id++) {
+                parent[id] = id;
+            }
+            long squaredTolerance = (long) tolerance * tolerance;
+            for (int id = 0; id < pointCount; id++) {
+                long key = points.key(id);
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        int cell = cells.indexOf(cellKey(key, dx, dy, tolerance));
+                        if (cell < 0) {
+                            continue;
+                        }
+                        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                            int other = cellPoints[i];
+                            if (other > id && squaredDistance(key, points.key(other)) <= squaredTolerance) {
+                                union(parent, id, other);
+                            }
+                        }
+                    }
+                }
+            }
+
+            // canonical point of each group: most line ends, then smallest coordinates
+            int[] canonical = new int[pointCount];
+            Arrays.fill(canonical, -1);
+            for (int id = 0; id < pointCount; id++) {
+                int root = find(parent, id);
+                int best = canonical[root];
+                if (best < 0 || points.count(id) > points.count(best)
+                        || points.count(id) == points.count(best) && compareKeys(points.key(id), points.key(best)) < 0) {
+                    canonical[root] = id;
+                }
+            }
+            int snappedPoints = 0;
+            for (int id = 0; id < pointCount; id++) {
+                if (canonical[find(parent, id)] != id) {
+                    snappedPoints++;
+                }
+            }
+
+            // lines with the canonical points, lines that have been snapped to a single point are dropped
+            SegmentCoordinates snapped = new SegmentCoordinates(lineCount);
+            int droppedLines = 0;
+            for (int line = 0; line < lineCount; line++) {
+                int start = canonical[find(parent, startIds[line])];
+                int end = canonical[find(parent, endIds[line])];
+                if (start == end && startIds[line] != endIds[line]) {
+                    droppedLines++;
+                    continue;
+                }
+                long startKey = points.key(start);
+                long endKey = points.key(end);
+                snapped.add(Point.keyX(startKey), Point.keyY(startKey), Point.keyX(endKey), Point.keyY(endKey));
+            }
+
+            RunMetrics.add(RunMetrics.Counter.SNAPPED_POINTS, snappedPoints);
+            RunMetrics.add(RunMetrics.Counter.DROPPED_LINES, droppedLines);
+            return snapped;
+        } finally {
+            snappingPhase.close();
+        }
+    }
+
+    /**
+     * Computes the key of a grid cell, packed like the key of a point
+     * @param pointKey packed x,y coordinates of a point
+     * @param dx offset in cells in x direction
+     * @param dy offset in cells in y direction
+     * @param cellSize width and height of a cell
+     * @return packed cell coordinates of the cell of the point, moved by the offset
+     */
+    private static long cellKey(long pointKey, int dx, int dy, int cellSize) {
+        return Point.packKey(Math.floorDiv(Point.keyX(pointKey), cellSize) + dx, Math.floorDiv(Point.keyY(pointKey), cellSize) + dy);
+    }
+
+    private static long squaredDistance(long a, long b) {
+        long dx = (long) Point.keyX(a) - Point.keyX(b);
+        long dy = (long) Point.keyY(a) - Point.keyY(b);
+        return dx * dx + dy * dy;
+    }
+
+    private static int compareKeys(long a, long b) {
+        int byX = Integer.compare(Point.keyX(a), Point.keyX(b));
+        return byX != 0 ? byX : Integer.compare(Point.keyY(a), Point.keyY(b));
+    }
+
+    /**
+     * Finds the root of the group of a point, with path halving
+     * @param parent parent of each point in the union-find forest
+     * @param id id of the point
+     * @return id of the root
+     */
+    private static int find(int[] parent, int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            // the smaller id becomes the root
+            if (rootA < rootB) {
+                parent[rootB] = rootA;
+            } else {
+                parent[rootA] = rootB;
+            }
+        }
+    }
+}
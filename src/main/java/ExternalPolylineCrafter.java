@@ -0,0 +1,416 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Crafts the polylines of inputs that are larger than the heap (external memory).
+ * LineCrafter and SegmentStore keep all lines and points in the heap. Here, the heap only holds buffers of a
+ * configurable size, everything else is kept in files in a work directory:
+ * 1. The input file is parsed in windows, and both endpoints of each line are written with their position in the
+ *    input data to a SpillSorter, which sorts them by point key in runs on disk.
+ * 2. The merged runs give all occurrences of each point one after another, so the connectivity of each point
+ *    and its first occurrence are known without a hash table.
+ * 3. The points are sorted by their first occurrence, so that they get the same ids as in a SegmentStore,
+ *    and the types are assigned with LineCrafter.typeForConnectivity(). The occurrences are sorted the same way
+ *    and get their point id by merging both sorted streams.
+ * 4. The occurrences, sorted by their position in the input data again, give the ids of the two points of each
+ *    line, and the incident lines of each point are sorted into the order of LineIncidenceIndex.
+ * 5. The polylines are crafted with the same loop as LineCrafter.CraftConnectedLines(SegmentStore), on columns
+ *    that are mapped into memory (see MappedColumn), and each polyline is handed to a sink when it is complete.
+ * Therefore the result contains the same polylines in the same order as LineCrafter.CraftConnectedLines(SegmentStore).
+ * The heap needs about the given memory plus the polyline that is being built. The work directory needs up to
+ * about 100 bytes per line, and the operating system caches the mapped columns
+ * as far as its memory allows. Only text input files are supported.
+ */
+public class ExternalPolylineCrafter {
+
+    // smallest memory that is used, even if less is given
+    private static final long MIN_MEMORY = 4L << 20;
+    // largest window of the input file that is mapped and parsed at once
+    private static final int MAX_PARSING_WINDOW = 1 << 30;
+
+    // directory in which the directory for the spill files and columns of a run is created
+    private final Path workDirectory;
+    // memory for the buffers in bytes
+    private final long memoryBytes;
+
+    /**
+     * Creates a crafter
+     * @param workDirectory directory for the temporary files, created if it does not exist
+     * @param memoryBytes memory for the buffers in bytes, at least 4 MB are used
+     */
+    public ExternalPolylineCrafter(Path workDirectory, long memoryBytes) {
+        this.workDirectory = workDirectory;
+        this.memoryBytes = Math.max(MIN_MEMORY, memoryBytes);
+    }
+
+    /**
+     * Reads the lines of a text input file and crafts their polylines with the rules of LineCrafter (OPTION 2).
+     * The temporary files are deleted at the end, also if the crafting fails.
+     * @param inputFile filename of the input data, lines of 4 numbers like for InputHandler.readCoordinatesMapped()
+     * @param sink receives every polyline as soon as it is complete
+     * @return number of polylines
+     * @throws IOException if the input file cannot be read or the temporary files cannot be written
+     */
+    public long craft(String inputFile, PolylineSink sink) throws IOException {
+        Files.createDirectories(workDirectory);
+        Path directory = Files.createTempDirectory(workDirectory, "external-");
+        try {
+            return craftInDirectory(inputFile, sink, directory);
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Runs the steps of the crafting with the temporary files in the given directory
+     * @param inputFile filename of the input data
+     * @param sink receives every polyline as soon as it is complete
+     * @param directory empty directory for the temporary files
+     * @return number of polylines
+     * @throws IOException if the input file cannot be read or the temporary files cannot be written
+     */
+    private long craftInDirectory(String inputFile, PolylineSink sink, Path directory) throws IOException {
+
+        // 1. endpoints (point key, 2 * line + 0 or 1) sorted by point key
+        SpillSorter endpoints = new SpillSorter(directory, "endpoints", 2, memoryBytes / 2);
+        int lineCount;
+        RunMetrics.Phase parsingPhase = RunMetrics.startPhase("parsing");
+        try {
+            lineCount = readEndpoints(inputFile, endpoints);
+        } finally {
+            parsingPhase.close();
+        }
+
+        SpillSorter lineEnds;
+        int pointCount;
+        MappedColumn pointKeys;
+        MappedColumn types;
+        RunMetrics.Phase typingPhase = RunMetrics.startPhase("typing");
+        try {
+
+            // 2. connectivity and first occurrence of each point
+            SpillSorter.Cursor endpointCursor = endpoints.sorted();
+            SpillSorter points = new SpillSorter(directory, "points", 3, memoryBytes / 4);
+            SpillSorter occurrences = new SpillSorter(directory, "occurrences", 2, memoryBytes / 4);
+            try {
+                boolean more = endpointCursor.next();
+                while (more) {
+                    long key = endpointCursor.get(0);
+                    long firstOccurrence = endpointCursor.get(1);
+                    long connectivity = 0;
+                    do {
+                        occurrences.add(firstOccurrence, endpointCursor.get(1));
+                        connectivity++;
+                        more = endpointCursor.next();
+                    } while (more && endpointCursor.get(0) == key);
+                    points.add(firstOccurrence, key, connectivity);
+                }
+            } finally {
+                endpointCursor.close();
+                endpoints.close();
+            }
+
+            // 3. ids in the order of the first occurrence, types, and the id of each occurrence
+            pointCount = (int) points.size();
+            pointKeys = new MappedColumn(directory.resolve("point-keys"), pointCount, Long.BYTES);
+            types = new MappedColumn(directory.resolve("types"), pointCount, Integer.BYTES);
+            SpillSorter.Cursor pointCursor = points.sorted();
+            SpillSorter.Cursor occurrenceCursor = occurrences.sorted();
+            lineEnds = new SpillSorter(directory, "line-ends", 2, memoryBytes / 2);
+            long sp = 0;
+            long cn = 0;
+            long ter = 0;
+            try {
+                boolean moreOccurrences = occurrenceCursor.next();
+                for (int id = 0; pointCursor.next(); id++) {
+                    long firstOccurrence = pointCursor.get(0);
+                    int type = LineCrafter.typeForConnectivity((int) pointCursor.get(2));
+                    pointKeys.putLong(id, pointCursor.get(1));
+                    types.putInt(id, type);
+                    if (type == 1) {
+                        sp++;
+                    } else if (type == 3) {
+                        cn++;
+                    } else if (type >= 6) {
+                        ter++;
+                    }
+                    while (moreOccurrences && occurrenceCursor.get(0) == firstOccurrence) {
+                        lineEnds.add(occurrenceCursor.get(1), id);
+                        moreOccurrences = occurrenceCursor.next();
+                    }
+                }
+            } finally {
+                pointCursor.close();
+                occurrenceCursor.close();
+                points.close();
+                occurrences.close();
+            }
+            RunMetrics.add(RunMetrics.Counter.SP_POINTS, sp);
+            RunMetrics.add(RunMetrics.Counter.CN_POINTS, cn);
+            RunMetrics.add(RunMetrics.Counter.TER_POINTS, ter);
+        } finally {
+            typingPhase.close();
+        }
+
+        MappedColumn lineStart = new MappedColumn(directory.resolve("line-start"), lineCount, Integer.BYTES);
+        MappedColumn lineEnd = new MappedColumn(directory.resolve("line-end"), lineCount, Integer.BYTES);
+        MappedColumn incidenceOffsets = new MappedColumn(directory.resolve("incidence-offsets"), pointCount + 1L, Long.BYTES);
+        MappedColumn cursors = new MappedColumn(directory.resolve("cursors"), pointCount, Long.BYTES);
+        MappedColumn incidentLines;
+        RunMetrics.Phase indexingPhase = RunMetrics.startPhase("indexing");
+        try {
+
+            // 4. the two points of each line, and the incident lines (point id * 4 + group of the other end, line)
+            SpillSorter.Cursor lineEndCursor = lineEnds.sorted();
+            SpillSorter incidence = new SpillSorter(directory, "incidence", 2, memoryBytes / 2);
+            try {
+                while (lineEndCursor.next()) {
+                    long occurrence = lineEndCursor.get(0);
+                    int id = (int) lineEndCursor.get(1);
+                    int line = (int) (occurrence >>> 1);
+                    if ((occurrence & 1) == 0) {
+                        lineStart.putInt(line, id);
+                        continue;
+                    }
+                    lineEnd.putInt(line, id);
+                    int start = lineStart.getInt(line);
+                    int endRank = LineIncidenceIndex.rankOf(types.getInt(id));
+                    int startRank = LineIncidenceIndex.rankOf(types.getInt(start));
+                    if (endRank != LineIncidenceIndex.RANK_UNUSABLE) {
+                        incidence.add(start * 4L + endRank, line);
+                    }
+                    if (startRank != LineIncidenceIndex.RANK_UNUSABLE) {
+                        incidence.add(id * 4L + startRank, line);
+                    }
+                }
+            } finally {
+                lineEndCursor.close();
+                lineEnds.close();
+            }
+
+            // sorted by point, group and line, like the incident lines in LineIncidenceIndex
+            incidentLines = new MappedColumn(directory.resolve("incident-lines"), incidence.size(), Integer.BYTES);
+            try (SpillSorter.Cursor incidenceCursor = incidence.sorted()) {
+                long position = 0;
+                int point = 0;
+                while (incidenceCursor.next()) {
+                    int id = (int) (incidenceCursor.get(0) >>> 2);
+                    while (point < id) {
+                        incidenceOffsets.putLong(++point, position);
+                    }
+                    incidentLines.putInt(position++, (int) incidenceCursor.get(1));
+                }
+                while (point < pointCount) {
+                    incidenceOffsets.putLong(++point, position);
+                }
+            } finally {
+                incidence.close();
+            }
+            for (int id = 0; id < pointCount; id++) {
+                cursors.putLong(id, incidenceOffsets.getLong(id));
+            }
+        } finally {
+            indexingPhase.close();
+        }
+
+        // 5. the polylines
+        RunMetrics.Phase craftingPhase = RunMetrics.startPhase("crafting");
+        try (MappedColumn usedLines = new MappedColumn(directory.resolve("used-lines"), (lineCount + 63L) / 64, Long.BYTES)) {
+            return craftPolylines(pointCount, lineStart, lineEnd, incidenceOffsets, cursors, incidentLines, usedLines,
+                    types, pointKeys, sink);
+        } finally {
+            craftingPhase.close();
+            pointKeys.close();
+            types.close();
+            lineStart.close();
+            lineEnd.close();
+            incidenceOffsets.close();
+            cursors.close();
+            incidentLines.close();
+        }
+    }
+
+    /**
+     * Parses the input file in windows and adds both endpoints of each line to the sorter.
+     * Malformed lines are reported like by InputHandler.readCoordinatesMapped() and skipped.
+     * @param inputFile filename of the input data
+     * @param endpoints receives (point key, 2 * line) for the first and (point key, 2 * line + 1) for the second point
+     * @return number of lines
+     * @throws IOException if the file cannot be read, is a binary segment file or has too many lines
+     */
+    private int readEndpoints(String inputFile, SpillSorter endpoints) throws IOException {
+        long lineCount = 0;
+        long malformedLines = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+            if (SegmentFile.isSegmentFile(channel)) {
+                throw new IOException("Binary segment files cannot be crafted in external memory, use the text file " + inputFile);
+            }
+            // a line has at least 8 bytes, so the coordinates of a window need at most twice its size
+            int window = (int) Math.min(MAX_PARSING_WINDOW, memoryBytes / 8);
+            long fileSize = channel.size();
+            long position = 0;
+            long lineNumber = 1;
+            while (position < fileSize) {
+                int length = (int) Math.min(window, fileSize - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                // unless this is the last window, only parse up to the last line break in the window
+                int limit = length;
+                if (position + length < fileSize) {
+                    while (limit > 0 && buffer.get(limit - 1) != '\n') {
+                        limit--;
+                    }
+                    if (limit == 0) {
+                        throw new IOException("Line " + lineNumber + " is longer than " + window + " bytes");
+                    }
+                }
+                SegmentCoordinates coordinates = new SegmentCoordinates(limit / 16);
+                lineNumber = InputHandler.parseLines(buffer, 0, limit, lineNumber, coordinates);
+                for (String malformedLine : coordinates.getMalformedLines()) {
+                    System.err.println("Malformed input in " + inputFile + ", " + malformedLine);
+                }
+                malformedLines += coordinates.getMalformedLines().size();
+                if (lineCount + coordinates.size() > Integer.MAX_VALUE) {
+                    throw new IOException("The input file has more than " + Integer.MAX_VALUE + " lines");
+                }
+                for (int line = 0; line < coordinates.size(); line++) {
+                    endpoints.add(Point.packKey(coordinates.getX1(line), coordinates.getY1(line)), 2 * lineCount);
+                    endpoints.add(Point.packKey(coordinates.getX2(line), coordinates.getY2(line)), 2 * lineCount + 1);
+                    lineCount++;
+                }
+                position += limit;
+            }
+        }
+        RunMetrics.add(RunMetrics.Counter.LINES, lineCount);
+        RunMetrics.add(RunMetrics.Counter.MALFORMED_LINES, malformedLines);
+        System.out.println("Extraction of coordinates from file has been successful.");
+        return (int) lineCount;
+    }
+
+    /**
+     * Loop of the iterative algorithm on the mapped columns, the same as in LineCrafter.craftPolylines():
+     * the next polyline starts at the first TER, then SP, then CN that can still be used, and each step takes
+     * the first unused incident line of the current point.
+     * @param pointCount number of points
+     * @param lineStart id of the first point of each line
+     * @param lineEnd id of the second point of each line
+     * @param incidenceOffsets position of the first incident line of each point, and the end of the last point
+     * @param cursors position of the first incident line of each point that might still be unused
+     * @param incidentLines incident lines of all points
+     * @param usedLines bits of the lines that have been used
+     * @param types type of each point, is updated after every usage of a point
+     * @param pointKeys packed coordinates of each point
+     * @param sink receives every polyline as soon as it is complete
+     * @return number of polylines
+     */
+    private static long craftPolylines(int pointCount, MappedColumn lineStart, MappedColumn lineEnd,
+                                       MappedColumn incidenceOffsets, MappedColumn cursors, MappedColumn incidentLines,
+                                       MappedColumn usedLines, MappedColumn types, MappedColumn pointKeys,
+                                       PolylineSink sink) {
+
+        // ids of the points of the polyline being built
+        int[] linienZug = new int[16];
+        int linienZugLength = 0;
+
+        // positions from which the search for the next start point of each type group continues
+        int nextTer = 0;
+        int nextSp = 0;
+        int nextCn = 0;
+
+        long searchSteps = 0;
+        long polylineCount = 0;
+        long closedLoops = 0;
+
+        while (true) {
+            int currentPoint;
+            if (linienZugLength == 0) {
+                // no polyline is being built: start with TER, then SP, then CN
+                while (nextTer < pointCount && types.getInt(nextTer) < 4) {
+                    nextTer++;
+                }
+                while (nextSp < pointCount && types.getInt(nextSp) != 1) {
+                    nextSp++;
+                }
+                while (nextCn < pointCount && types.getInt(nextCn) != 2 && types.getInt(nextCn) != 3) {
+                    nextCn++;
+                }
+                if (nextTer < pointCount) {
+                    currentPoint = nextTer;
+                } else if (nextSp < pointCount) {
+                    currentPoint = nextSp;
+                } else if (nextCn < pointCount) {
+                    currentPoint = nextCn;
+                } else {
+                    // all points have been used
+                    break;
+                }
+                linienZug[linienZugLength++] = currentPoint;
+            } else {
+                // a polyline is being built, and the current point is the last element of it
+                currentPoint = linienZug[linienZugLength - 1];
+            }
+
+            // first unused incident line of the current point, like LineIncidenceIndex.takeNextLine()
+            long end = incidenceOffsets.getLong(currentPoint + 1L);
+            long position = cursors.getLong(currentPoint);
+            while (position < end && isUsed(usedLines, incidentLines.getInt(position))) {
+                position++;
+            }
+            cursors.putLong(currentPoint, position);
+            searchSteps++;
+            if (position == end) {
+                throw new IllegalStateException("No unused line left for point with id " + currentPoint);
+            }
+            int line = incidentLines.getInt(position);
+            usedLines.putLong(line >>> 6, usedLines.getLong(line >>> 6) | 1L << line);
+            int nextPoint = lineStart.getInt(line) == currentPoint ? lineEnd.getInt(line) : lineStart.getInt(line);
+
+            if (linienZugLength == linienZug.length) {
+                linienZug = Arrays.copyOf(linienZug, linienZugLength * 2);
+            }
+            linienZug[linienZugLength++] = nextPoint;
+
+            // update types of the used points accordingly
+            boolean nextIsConnector = types.getInt(nextPoint) == 2 || types.getInt(nextPoint) == 3;
+            types.putInt(currentPoint, LineCrafter.typeAfterUse(types.getInt(currentPoint)));
+            types.putInt(nextPoint, LineCrafter.typeAfterUse(types.getInt(nextPoint)));
+
+            // An SP or TER ends the polyline. A CN that has been used up closes a circular polyline.
+            if (!nextIsConnector || types.getInt(nextPoint) == 0) {
+                ArrayList<Point> linienzug = new ArrayList<>(linienZugLength);
+                for (int i = 0; i < linienZugLength; i++) {
+                    long key = pointKeys.getLong(linienZug[i]);
+                    linienzug.add(new Point(Point.keyX(key), Point.keyY(key), types.getInt(linienZug[i])));
+                }
+                sink.accept(linienzug);
+                polylineCount++;
+                if (linienZugLength > 2 && linienZug[0] == nextPoint) {
+                    closedLoops++;
+                }
+                linienZugLength = 0;
+            }
+        }
+
+        RunMetrics.add(RunMetrics.Counter.SEARCH_STEPS, searchSteps);
+        RunMetrics.add(RunMetrics.Counter.POLYLINES, polylineCount);
+        RunMetrics.add(RunMetrics.Counter.CLOSED_LOOPS, closedLoops);
+        return polylineCount;
+    }
+
+    private static boolean isUsed(MappedColumn usedLines, int line) {
+        return (usedLines.getLong(line >>> 6) & 1L << line) != 0;
+    }
+}
@@ -0,0 +1,394 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Keeps the polylines of a network of lines up to date while lines are added or removed, without crafting the
+ * whole network again after every change.
+ * The polylines of a network are fixed by its points: a polyline only continues through CN points (two lines)
+ * and ends in SP and TER points. Adding or removing a line only changes the connectivity of its two points,
+ * so only the polylines that touch one of these points can change. applyChanges() removes exactly these
+ * polylines and crafts their remaining lines together with the new lines again (see
+ * LineCrafter.CraftConnectedLines(int[], int[], int, int[], int)). All other polylines are kept as they are.
+ * A re-crafted point keeps the type group of its connectivity in the whole network (SP, CN or TER), but a TER
+ * can only be used as often as it has lines among the re-crafted lines.
+ * The cost of an update therefore depends on the number of changed lines and the length of the polylines that
+ * touch them, not on the size of the network.
+ * The polylines are the same as after crafting the whole network from scratch, but a re-crafted polyline may
+ * run in the other direction or start at another point of its circle, and new polylines are appended at the end.
+ */
+public class IncrementalPolylines {
+
+    // ids and coordinates of the points. The count of a point is its connectivity (number of line ends).
+    private final PointKeyTable points;
+    // lines that begin or end in each point
+    private IntList[] incidentLines;
+
+    // ids of the two points of each line, -1 if the line id is free
+    private int[] lineStart;
+    private int[] lineEnd;
+    // polyline that contains each line, -1 if the line does not belong to a polyline yet
+    private int[] polylineOfLine;
+    // number of line ids handed out so far
+    private int lineSlots;
+    // line ids of removed lines, for reuse
+    private final IntList freeLines = new IntList();
+    // number of lines in the network
+    private int lineCount;
+
+    // point ids and line ids of each polyline, null if the polyline slot is free
+    private final ArrayList<int[]> polylinePoints = new ArrayList<>();
+    private final ArrayList<int[]> polylineLines = new ArrayList<>();
+    // free polyline slots, for reuse
+    private final IntList freePolylines = new IntList();
+    // number of polylines in the network
+    private int polylineCount;
+
+    // marks of the current update: an entry is marked if it equals stamp
+    private int stamp;
+    private int[] pointMark;
+    private int[] localPointMark;
+    private int[] lineMark;
+    private int[] polylineMark = new int[16];
+    // id of each point among the re-crafted points
+    private int[] localId;
+
+    private final LineCrafter lineCrafter = new LineCrafter();
+
+    //Constructor
+    public IncrementalPolylines() {
+        points = new PointKeyTable(16);
+        incidentLines = new IntList[16];
+        pointMark = new int[16];
+        localPointMark = new int[16];
+        localId = new int[16];
+        lineStart = new int[16];
+        lineEnd = new int[16];
+        polylineOfLine = new int[16];
+        lineMark = new int[16];
+    }
+
+    /**
+     * Creates the polylines for the lines of the input data
+     * @param coordinates x1, y1, x2, y2 of all lines (see InputHandler.readCoordinatesMapped())
+     */
+    public IncrementalPolylines(SegmentCoordinates coordinates) {
+        this();
+        applyChanges(coordinates, new SegmentCoordinates(0));
+    }
+
+    /**
+     * Removes and adds lines and updates the polylines that are affected by the change.
+     * First all removed lines are taken out of the network, then the new lines are added.
+     * A removed line is found by its two points in any direction. If there are several equal lines, one of them
+     * is removed. Lines that are not part of the network are reported to System.err and ignored.
+     * @param added lines to add
+     * @param removed lines to remove
+     * @return number of lines that have been crafted again, including the new lines
+     */
+    public int applyChanges(SegmentCoordinates added, SegmentCoordinates removed) {
+        stamp++;
+
+        // take out the removed lines and add the new ones, and mark the points whose connectivity has changed
+        IntList changedPoints = new IntList();
+        IntList affectedPolylines = new IntList();
+        for (int line = 0; line < removed.size(); line++) {
+            removeLine(removed.getX1(line), removed.getY1(line), removed.getX2(line), removed.getY2(line), changedPoints, affectedPolylines);
+        }
+        IntList newLines = new IntList();
+        for (int line = 0; line < added.size(); line++) {
+            newLines.add(addLine(added.getX1(line), added.getY1(line), added.getX2(line), added.getY2(line), changedPoints));
+        }
+
+        // every polyline that touches a changed point has to be crafted again
+        for (int i = 0; i < changedPoints.size; i++) {
+            IntList lines = incidentLines[changedPoints.values[i]];
+            for (int j = 0; j < lines.size; j++) {
+                markPolyline(polylineOfLine[lines.values[j]], affectedPolylines);
+            }
+        }
+
+        // collect the remaining lines of these polylines and the new lines, and free the polylines
+        IntList recraftedLines = new IntList();
+        for (int i = 0; i < affectedPolylines.size; i++) {
+            int polyline = affectedPolylines.values[i];
+            for (int line : polylineLines.get(polyline)) {
+                // the id of a removed line may already belong to a new line
+                if (lineStart[line] >= 0 && polylineOfLine[line] == polyline) {
+                    polylineOfLine[line] = -1;
+                    lineMark[line] = stamp;
+                    recraftedLines.add(line);
+                }
+            }
+            polylinePoints.set(polyline, null);
+            polylineLines.set(polyline, null);
+            freePolylines.add(polyline);
+            polylineCount--;
+        }
+        for (int i = 0; i < newLines.size; i++) {
+            lineMark[newLines.values[i]] = stamp;
+            recraftedLines.add(newLines.values[i]);
+        }
+
+        craft(recraftedLines);
+        return recraftedLines.size;
+    }
+
+    /**
+     * Crafts the polylines of the collected lines and stores them
+     * @param recraftedLines lines without polyline, all marked with the current stamp
+     */
+    private void craft(IntList recraftedLines) {
+
+        // number the points of the lines and count how often each point is used by them
+        IntList globalIds = new IntList();
+        int[] localStart = new int[recraftedLines.size];
+        int[] localEnd = new int[recraftedLines.size];
+        IntList localConnectivity = new IntList();
+        for (int i = 0; i < recraftedLines.size; i++) {
+            int line = recraftedLines.values[i];
+            localStart[i] = localPoint(lineStart[line], globalIds, localConnectivity);
+            localEnd[i] = localPoint(lineEnd[line], globalIds, localConnectivity);
+        }
+
+        // type group from the connectivity in the whole network, number of usages from the re-crafted lines
+        int[] types = new int[globalIds.size];
+        for (int local = 0; local < types.length; local++) {
+            int connectivity = points.count(globalIds.values[local]);
+            int localUsages = localConnectivity.values[local];
+            types[local] = connectivity >= 3 ? localUsages + 3 : LineCrafter.typeForConnectivity(localUsages);
+        }
+
+        PolylineList polylines = lineCrafter.CraftConnectedLines(localStart, localEnd, localStart.length, types, types.length);
+
+        // store the polylines with the ids of the network and assign their lines
+        for (int polyline = 0; polyline < polylines.size(); polyline++) {
+            int length = polylines.pointCount(polyline);
+            int[] pointIds = new int[length];
+            for (int position = 0; position < length; position++) {
+                pointIds[position] = globalIds.values[polylines.pointId(polyline, position)];
+            }
+            int slot = freePolylines.size > 0 ? freePolylines.values[--freePolylines.size] : polylinePoints.size();
+            if (slot == polylinePoints.size()) {
+                polylinePoints.add(null);
+                polylineLines.add(null);
+            }
+            int[] lineIds = new int[length - 1];
+            for (int position = 0; position < length - 1; position++) {
+                lineIds[position] = unassignedLine(pointIds[position], pointIds[position + 1]);
+                polylineOfLine[lineIds[position]] = slot;
+            }
+            polylinePoints.set(slot, pointIds);
+            polylineLines.set(slot, lineIds);
+            polylineCount++;
+        }
+    }
+
+    /**
+     * Finds a re-crafted line between two points that has not been assigned to a polyline yet
+     * @param from id of the first point
+     * @param to id of the second point
+     * @return id of the line
+     */
+    private int unassignedLine(int from, int to) {
+        IntList lines = incidentLines[from];
+        for (int i = 0; i < lines.size; i++) {
+            int line = lines.values[i];
+            if (lineMark[line] == stamp && polylineOfLine[line] < 0 && otherEnd(line, from) == to) {
+                return line;
+            }
+        }
+        throw new IllegalStateException("No re-crafted line between the points with ids " + from + " and " + to);
+    }
+
+    /**
+     * Looks up the id of a point among the re-crafted points and counts one usage of it
+     * @param pointId id of the point in the network
+     * @param globalIds receives the network id of each new local point
+     * @param localConnectivity number of usages of each local point
+     * @return local id of the point
+     */
+    private int localPoint(int pointId, IntList globalIds, IntList localConnectivity) {
+        if (localPointMark[pointId] != stamp) {
+            localPointMark[pointId] = stamp;
+            localId[pointId] = globalIds.size;
+            globalIds.add(pointId);
+            localConnectivity.add(0);
+        }
+        localConnectivity.values[localId[pointId]]++;
+        return localId[pointId];
+    }
+
+    /**
+     * Removes one line between two points from the network
+     * @param changedPoints receives the points whose connectivity changes
+     * @param affectedPolylines receives the polyline of the line
+     */
+    private void removeLine(int x1, int y1, int x2, int y2, IntList changedPoints, IntList affectedPolylines) {
+        int from = points.indexOf(Point.packKey(x1, y1));
+        int to = points.indexOf(Point.packKey(x2, y2));
+        int line = -1;
+        if (from >= 0 && to >= 0) {
+            IntList lines = incidentLines[from];
+            for (int i = 0; i < lines.size && line < 0; i++) {
+                if (otherEnd(lines.values[i], from) == to) {
+                    line = lines.values[i];
+                }
+            }
+        }
+        if (line < 0) {
+            System.err.println("Line " + x1 + " " + y1 + " " + x2 + " " + y2 + " is not part of the network and cannot be removed");
+            return;
+        }
+
+        markPolyline(polylineOfLine[line], affectedPolylines);
+        incidentLines[from].remove(line);
+        incidentLines[to].remove(line);
+        points.setCount(from, points.count(from) - 1);
+        points.setCount(to, points.count(to) - 1);
+        markPoint(from, changedPoints);
+        markPoint(to, changedPoints);
+
+        lineStart[line] = -1;
+        lineEnd[line] = -1;
+        polylineOfLine[line] = -1;
+        freeLines.add(line);
+        lineCount--;
+    }
+
+    /**
+     * Adds a line to the network
+     * @param changedPoints receives the points whose connectivity changes
+     * @return id of the new line
+     */
+    private int addLine(int x1, int y1, int x2, int y2, IntList changedPoints) {
+        int from = points.add(Point.packKey(x1, y1));
+        ensurePointCapacity(from);
+        int to = points.add(Point.packKey(x2, y2));
+        ensurePointCapacity(to);
+
+        int line = freeLines.size > 0 ? freeLines.values[--freeLines.size] : lineSlots++;
+        if (line == lineStart.length) {
+            int capacity = line + (line >> 1);
+            lineStart = Arrays.copyOf(lineStart, capacity);
+            lineEnd = Arrays.copyOf(lineEnd, capacity);
+            polylineOfLine = Arrays.copyOf(polylineOfLine, capacity);
+            lineMark = Arrays.copyOf(lineMark, capacity);
+        }
+        lineStart[line] = from;
+        lineEnd[line] = to;
+        polylineOfLine[line] = -1;
+        incidentLines[from].add(line);
+        incidentLines[to].add(line);
+        markPoint(from, changedPoints);
+        markPoint(to, changedPoints);
+        lineCount++;
+        return line;
+    }
+
+    /**
+     * Makes room for the data of a point id
+     * @param pointId id of a point that may have just been added
+     */
+    private void ensurePointCapacity(int pointId) {
+        if (pointId == incidentLines.length) {
+            int capacity = pointId + (pointId >> 1);
+            incidentLines = Arrays.copyOf(incidentLines, capacity);
+            pointMark = Arrays.copyOf(pointMark, capacity);
+            localPointMark = Arrays.copyOf(localPointMark, capacity);
+            localId = Arrays.copyOf(localId, capacity);
+        }
+        if (incidentLines[pointId] == null) {
+            incidentLines[pointId] = new IntList();
+        }
+    }
+
+    private void markPoint(int pointId, IntList changedPoints) {
+        if (pointMark[pointId] != stamp) {
+            pointMark[pointId] = stamp;
+            changedPoints.add(pointId);
+        }
+    }
+
+    private void markPolyline(int polyline, IntList affectedPolylines) {
+        if (polyline < 0) {
+            return;
+        }
+        if (polyline >= polylineMark.length) {
+            polylineMark = Arrays.copyOf(polylineMark, Math.max(polyline + 1, polylineMark.length * 2));
+        }
+        if (polylineMark[polyline] != stamp) {
+            polylineMark[polyline] = stamp;
+            affectedPolylines.add(polyline);
+        }
+    }
+
+    private int otherEnd(int line, int pointId) {
+        return lineStart[line] == pointId ? lineEnd[line] : lineStart[line];
+    }
+
+    /**
+     * Getter for the number of lines
+     * @return number of lines in the network
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Getter for the number of polylines
+     * @return number of polylines in the network
+     */
+    public int getPolylineCount() {
+        return polylineCount;
+    }
+
+    /**
+     * Converts the current polylines to the format of LineCrafter.CraftConnectedLines(), e.g. for ranking,
+     * printing or plotting. Like after crafting, all points have type 0.
+     * @return list of polylines, where each polyline consists of new Point objects
+     */
+    public ArrayList<ArrayList<Point>> getLinienzuege() {
+        ArrayList<ArrayList<Point>> linienzuege = new ArrayList<>(polylineCount);
+        for (int[] pointIds : polylinePoints) {
+            if (pointIds == null) {
+                continue;
+            }
+            ArrayList<Point> linienzug = new ArrayList<>(pointIds.length);
+            for (int pointId : pointIds) {
+                long key = points.key(pointId);
+                linienzug.add(new Point(Point.keyX(key), Point.keyY(key), 0));
+            }
+            linienzuege.add(linienzug);
+        }
+        return linienzuege;
+    }
+
+    /**
+     * Growable list of int values
+     */
+    private static class IntList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Removes one occurrence of a value, the last value takes its place
+         * @param value value to remove
+         */
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+    }
+}
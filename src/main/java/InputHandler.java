@@ -1,5 +1,12 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Scanner;
 
@@ -16,6 +23,22 @@ public class InputHandler {
      * one line in the input data file with the according coordinates.
      */
     public ArrayList<ArrayList<Integer>> readCoordinates(String filename){
+        RunMetrics.Phase parsingPhase = RunMetrics.startPhase("parsing");
+        try {
+            ArrayList<ArrayList<Integer>> coordsOfInitalLines = readCoordinatesUnmeasured(filename);
+            RunMetrics.add(RunMetrics.Counter.LINES, coordsOfInitalLines.size());
+            return coordsOfInitalLines;
+        } finally {
+            parsingPhase.close();
+        }
+    }
+
+    /**
+     * Reads the coordinates like readCoordinates(), which measures this as parsing phase (see RunMetrics)
+     * @param filename filename of the input data
+     * @return coordinates of all lines
+     */
+    private ArrayList<ArrayList<Integer>> readCoordinatesUnmeasured(String filename){
 
         ArrayList<ArrayList<Integer>> coordsOfInitalLines = new ArrayList<>();
 
@@ -51,4 +74,170 @@ public class InputHandler {
 
     }
 
+    // maximal number of bytes of the input file that are mapped into memory at once
+    private static final int MAPPING_WINDOW = 1 << 30;
+
+    /**
+     * Reads the coordinates of the input file like readCoordinates(), but without creating a String or an Integer
+     * for each line. The file is mapped into memory and its bytes are parsed directly into primitive int arrays.
+     * Numbers may be separated by any number of spaces or tabs, and lines may end with LF or CRLF.
+     * Empty lines are skipped. Lines that do not consist of exactly four integer numbers are not stored,
+     * but reported with their line number after the whole file has been read.
+     * Files larger than 1 GB are mapped in several windows, each ending at a line break.
+     * Binary segment files (see SegmentFile) are recognized by their first bytes and decoded without parsing.
+     * @param filename filename of the input data
+     * @return coordinates of all lines that could be read, together with the descriptions of the malformed lines
+     */
+    public SegmentCoordinates readCoordinatesMapped(String filename){
+        RunMetrics.Phase parsingPhase = RunMetrics.startPhase("parsing");
+        try {
+            SegmentCoordinates coordinates = new SegmentCoordinates(0);
+
+            try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+
+                if (SegmentFile.isSegmentFile(channel)) {
+                    // binary segment file (see SegmentFile), the columns are decoded directly
+                    coordinates = SegmentFile.read(channel);
+                } else {
+                    long fileSize = channel.size();
+                    coordinates = new SegmentCoordinates((int) Math.min(Integer.MAX_VALUE - 8, fileSize / 16));
+
+                    long position = 0;
+                    long lineNumber = 1;
+                    while (position < fileSize) {
+                        int length = (int) Math.min(MAPPING_WINDOW, fileSize - position);
+                        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                        // unless this is the last window, only parse up to the last line break in the window
+                        int limit = length;
+                        if (position + length < fileSize) {
+                            while (limit > 0 && buffer.get(limit - 1) != '\n') {
+                                limit--;
+                            }
+                            if (limit == 0) {
+                                throw new IOException("Line " + lineNumber + " is longer than " + MAPPING_WINDOW + " bytes");
+                            }
+                        }
+                        lineNumber = parseLines(buffer, 0, limit, lineNumber, coordinates);
+                        position += limit;
+                    }
+                }
+
+                RunMetrics.add(RunMetrics.Counter.LINES, coordinates.size());
+                RunMetrics.add(RunMetrics.Counter.MALFORMED_LINES, coordinates.getMalformedLines().size());
+                for (String malformedLine : coordinates.getMalformedLines()) {
+                    System.err.println("Malformed input in " + filename + ", " + malformedLine);
+                }
+                System.out.println("Extraction of coordinates from file has been successful.");
+
+            } catch (NoSuchFileException NsFexception){
+                System.err.println("No file found ! " + filename);
+                NsFexception.printStackTrace();
+            } catch (IOException IOexception){
+                System.err.println("File could not be read ! " + filename);
+                IOexception.printStackTrace();
+            }
+
+            return coordinates;
+        } finally {
+            parsingPhase.close();
+        }
+    }
+
+    /**
+     * Parses the lines in a range of bytes and adds the coordinates of each valid line.
+     * The range has to start at the beginning of a line. Lines that are no valid input lines
+     * are recorded as malformed lines in the result.
+     * @param buffer bytes of the input data
+     * @param start position of the first byte to parse
+     * @param end position after the last byte to parse
+     * @param lineNumber line number of the first line in the range
+     * @param coordinates receives the coordinates of the lines
+     * @return line number of the next line after the range
+     */
+    static long parseLines(ByteBuffer buffer, int start, int end, long lineNumber, SegmentCoordinates coordinates) {
+
+        int[] values = new int[4];
+        int position = start;
+
+        while (position < end) {
+            int count = 0;          // numbers found in the current line
+            String problem = null;  // first problem found in the current line
+
+            // parse one line up to the line break or the end of the range
+            while (position < end) {
+                byte b = buffer.get(position);
+                if (b == '\n') {
+                    position++;
+                    break;
+                }
+                if (b == ' ' || b == '\t' || b == '\r') {
+                    position++;
+                    continue;
+                }
+
+                // parse one number, which ends at the next separator
+                int tokenStart = position;
+                boolean negative = false;
+                if (b == '-' || b == '+') {
+                    negative = b == '-';
+                    position++;
+                }
+                long value = 0;
+                int digits = 0;
+                boolean valid = true;
+                while (position < end) {
+                    b = buffer.get(position);
+                    if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                        break;
+                    }
+                    if (b >= '0' && b <= '9' && value <= Integer.MAX_VALUE + 1L) {
+                        value = value * 10 + (b - '0');
+                        digits++;
+                    } else {
+                        valid = false;
+                    }
+                    position++;
+                }
+                if (negative) {
+                    value = -value;
+                }
+                if (!valid || digits == 0 || value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+                    if (problem == null) {
+                        problem = "invalid number '" + tokenToString(buffer, tokenStart, position) + "'";
+                    }
+                } else if (count < 4) {
+                    values[count] = (int) value;
+                }
+                count++;
+            }
+
+            if (problem == null && count != 4 && count != 0) {
+                problem = "expected 4 numbers but found " + count;
+            }
+            if (problem != null) {
+                coordinates.addMalformedLine(lineNumber, problem);
+            } else if (count == 4) {
+                coordinates.add(values[0], values[1], values[2], values[3]);
+            }
+            lineNumber++;
+        }
+        return lineNumber;
+    }
+
+    /**
+     * Creates a String for a token of the input data. Only used to describe malformed lines.
+     * @param buffer bytes of the input data
+     * @param start position of the first byte of the token
+     * @param end position after the last byte of the token
+     * @return the token as a String, shortened to 20 characters
+     */
+    private static String tokenToString(ByteBuffer buffer, int start, int end) {
+        StringBuilder token = new StringBuilder();
+        for (int i = start; i < end && token.length() < 20; i++) {
+            token.append((char) (buffer.get(i) & 0xFF));
+        }
+        return token.toString();
+    }
+
 }
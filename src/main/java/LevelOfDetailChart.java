@@ -0,0 +1,326 @@
+import org.knowm.xchart.QuickChart;
+import org.knowm.xchart.XChartPanel;
+import org.knowm.xchart.XYChart;
+import javax.swing.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Chart of polylines that only hands as many points to XChart as can be seen in the panel (level of detail).
+ * The full coordinates of all polylines are kept here, and every series of the chart only gets a decimated copy
+ * for the current viewport and panel size (see PolylineDecimator). When the user zooms in, the visible part is
+ * decimated again with the smaller pixel size, so that the polylines are shown at full detail.
+ * Mouse wheel: zoom in and out around the center, drag: move the viewport, double click: show everything.
+ * Several changes in a short time (e.g. while dragging) are combined into one update of the series.
+ * When only a part of the polylines is visible, the visible lines are looked up in a spatial index (see SegmentGrid),
+ * so that an update only decimates the lines in the viewport instead of all lines of all polylines, and the series of
+ * polylines that stay out of view are not touched at all.
+ * Views that show all polylines need every line, so their decimated series are kept for the last few viewports and
+ * panel sizes. Going back to such a view (double click, resizing the window back) only hands the kept series to the
+ * chart again, and a resize that keeps the size of the panel does nothing.
+ */
+public class LevelOfDetailChart {
+
+    // maximal distance in pixels of a dropped point to the drawn polyline
+    private static final double TOLERANCE_PIXELS = 0.5;
+    // factor by which one step of the mouse wheel zooms
+    private static final double ZOOM_FACTOR = 1.25;
+    // delay in milliseconds to combine several changes of the viewport into one update
+    private static final int REFRESH_DELAY = 40;
+    // number of views with all polylines whose decimated series are kept
+    private static final int KEPT_FULL_VIEWS = 4;
+
+    private final XYChart chart;
+    private final XChartPanel<XYChart> panel;
+    // full coordinates of each polyline, in the order of the series
+    private final double[][] xData;
+    private final double[][] yData;
+    // range of all points
+    private double fullMinX = Double.MAX_VALUE;
+    private double fullMaxX = -Double.MAX_VALUE;
+    private double fullMinY = Double.MAX_VALUE;
+    private double fullMaxY = -Double.MAX_VALUE;
+    // currently visible range
+    private double minX;
+    private double maxX;
+    private double minY;
+    private double maxY;
+    // spatial index over the lines of all polylines, built when the viewport is changed for the first time
+    private SegmentGrid grid;
+    // true for each series that only holds a gap, because its polyline is not visible
+    private final boolean[] showsGap;
+    // positions of the visible lines of one polyline, large enough for the longest polyline
+    private int[] visibleLines;
+    // decimated series of the last views with all polylines, by viewport and panel size, the oldest first
+    private final Map<String, double[][][]> fullViews = new LinkedHashMap<>();
+    // viewport and panel size of the series in the chart, if they show all polylines, otherwise null
+    private String shownFullView;
+    // starts the update of the series after the last change of the viewport
+    private final Timer refreshTimer;
+    // position of the mouse during a drag
+    private int dragX;
+    private int dragY;
+
+    /**
+     * Creates the chart and its panel. The series are decimated for the preferred size of the panel,
+     * and again for the actual size as soon as the panel is shown.
+     * @param linienzuege 2d Array of line compositions (returned by LineCrafter Class)
+     *                   An inner list consists of consecutive points and characterizes one polyline.
+     */
+    public LevelOfDetailChart(ArrayList<ArrayList<Point>> linienzuege) {
+        xData = new double[linienzuege.size()][];
+        yData = new double[linienzuege.size()][];
+        showsGap = new boolean[linienzuege.size()];
+        for (int i = 0; i < linienzuege.size(); i++) {
+            ArrayList<Point> linienzug = linienzuege.get(i);
+            xData[i] = new double[linienzug.size()];
+            yData[i] = new double[linienzug.size()];
+            for (int j = 0; j < linienzug.size(); j++) {
+                xData[i][j] = linienzug.get(j).getX();
+                yData[i][j] = linienzug.get(j).getY();
+                fullMinX = Math.min(fullMinX, xData[i][j]);
+                fullMaxX = Math.max(fullMaxX, xData[i][j]);
+                fullMinY = Math.min(fullMinY, yData[i][j]);
+                fullMaxY = Math.max(fullMaxY, yData[i][j]);
+            }
+        }
+        minX = fullMinX;
+        maxX = fullMaxX;
+        minY = fullMinY;
+        maxY = fullMaxY;
+
+        // Initialize the chart with the first polyline and add the others, like PlotCreator.createChart()
+        PolylineDecimator decimator = createDecimator(600, 400);
+        double[][] first = nonEmpty(decimator.decimate(xData[0], yData[0]));
+        chart = QuickChart.getChart("Linienzuege", "X", "Y", "Linienzug 1", first[0], first[1]);
+        for (int i = 1; i < xData.length; i++) {
+            double[][] decimated = nonEmpty(decimator.decimate(xData[i], yData[i]));
+            chart.addSeries("Linienzug " + (i + 1), decimated[0], decimated[1]);
+        }
+        // all points are in the initial viewport, so no series only holds a gap
+        applyAxisRange();
+
+        panel = new XChartPanel<>(chart);
+        refreshTimer = new Timer(REFRESH_DELAY, event -> refresh());
+        refreshTimer.setRepeats(false);
+        addListeners();
+    }
+
+    /**
+     * Getter for the panel that shows the chart
+     * @return panel to add to a window
+     */
+    public XChartPanel<XYChart> getPanel() {
+        return panel;
+    }
+
+    /**
+     * Getter for the chart
+     * @return chart with the decimated series
+     */
+    public XYChart getChart() {
+        return chart;
+    }
+
+    /**
+     * Shows a part of the coordinate system. The series are updated shortly afterwards.
+     * @param minX smallest visible x value
+     * @param maxX largest visible x value
+     * @param minY smallest visible y value
+     * @param maxY largest visible y value
+     */
+    public void setViewport(double minX, double maxX, double minY, double maxY) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        refreshTimer.restart();
+    }
+
+    /**
+     * Shows all polylines again
+     */
+    public void resetViewport() {
+        setViewport(fullMinX, fullMaxX, fullMinY, fullMaxY);
+    }
+
+    /**
+     * Decimates all polylines for the current viewport and panel size and repaints the chart.
+     * If the viewport does not contain all points, only the visible lines from the grid are decimated.
+     * If it contains all points, the series are taken from the kept views if possible (see fullViewSeries()).
+     */
+    private void refresh() {
+        PolylineDecimator decimator = createDecimator(panel.getWidth(), panel.getHeight());
+        if (minX <= fullMinX && maxX >= fullMaxX && minY <= fullMinY && maxY >= fullMaxY) {
+            String view = minX + " " + maxX + " " + minY + " " + maxY + " " + panel.getWidth() + "x" + panel.getHeight();
+            if (view.equals(shownFullView)) {
+                // e.g. a resize event without a change of the size
+                return;
+            }
+            double[][][] series = fullViewSeries(view, decimator);
+            for (int i = 0; i < xData.length; i++) {
+                updateSeries(i, series[i]);
+            }
+            shownFullView = view;
+        } else {
+            shownFullView = null;
+            if (grid == null) {
+                buildGrid();
+            }
+            // the visible lines are sorted by polyline, so the lines of each polyline follow each other
+            long[] visible = grid.visibleLines(minX, maxX, minY, maxY);
+            int position = 0;
+            for (int i = 0; i < xData.length; i++) {
+                int count = 0;
+                while (position < visible.length && SegmentGrid.polylineOf(visible[position]) == i) {
+                    visibleLines[count++] = SegmentGrid.lineOf(visible[position++]);
+                }
+                if (count == 0 && showsGap[i]) {
+                    // the polyline has not been visible before either
+                    continue;
+                }
+                updateSeries(i, decimator.decimate(xData[i], yData[i], visibleLines, count));
+            }
+        }
+        applyAxisRange();
+        panel.repaint();
+    }
+
+    /**
+     * Looks up the decimated series of a view with all polylines, or decimates all polylines and keeps the result.
+     * Only the last KEPT_FULL_VIEWS views are kept, the decimated series hold not much more points than can be
+     * seen in the panel.
+     * @param view viewport and panel size
+     * @param decimator decimator for the view
+     * @return decimated x and y coordinates of each polyline
+     */
+    private double[][][] fullViewSeries(String view, PolylineDecimator decimator) {
+        double[][][] series = fullViews.remove(view);
+        if (series == null) {
+            series = new double[xData.length][][];
+            for (int i = 0; i < xData.length; i++) {
+                series[i] = decimator.decimate(xData[i], yData[i]);
+            }
+            if (fullViews.size() == KEPT_FULL_VIEWS) {
+                Iterator<String> oldest = fullViews.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        }
+        // put it last, as the most recently used view
+        fullViews.put(view, series);
+        return series;
+    }
+
+    /**
+     * Builds the spatial index over the lines of all polylines
+     */
+    private void buildGrid() {
+        grid = new SegmentGrid(xData, yData, fullMinX, fullMaxX, fullMinY, fullMaxY);
+        int maxLines = 1;
+        for (double[] x : xData) {
+            maxLines = Math.max(maxLines, x.length);
+        }
+        visibleLines = new int[maxLines];
+    }
+
+    /**
+     * Hands the decimated points of a polyline to its series
+     * @param i index of the polyline
+     * @param decimated decimated x and y coordinates, empty if the polyline is not visible
+     */
+    private void updateSeries(int i, double[][] decimated) {
+        showsGap[i] = decimated[0].length == 0;
+        double[][] shown = nonEmpty(decimated);
+        chart.updateXYSeries("Linienzug " + (i + 1), shown[0], shown[1], null);
+    }
+
+    /**
+     * Creates a decimator for the current viewport
+     * @param width width of the panel in pixels, the plot is a bit smaller, so the tolerance is a bit finer than needed
+     * @param height height of the panel in pixels
+     * @return decimator for the viewport
+     */
+    private PolylineDecimator createDecimator(int width, int height) {
+        return new PolylineDecimator(minX, maxX, minY, maxY, width, height, TOLERANCE_PIXELS);
+    }
+
+    /**
+     * Fixes the axes of the chart to the viewport, so that they do not follow the decimated data
+     */
+    private void applyAxisRange() {
+        chart.getStyler().setXAxisMin(minX);
+        chart.getStyler().setXAxisMax(maxX);
+        chart.getStyler().setYAxisMin(minY);
+        chart.getStyler().setYAxisMax(maxY);
+    }
+
+    /**
+     * XChart needs at least one point per series. A polyline outside of the viewport is replaced by a gap.
+     * @param decimated decimated x and y coordinates
+     * @return the coordinates, or a single gap in the viewport if there are none
+     */
+    private double[][] nonEmpty(double[][] decimated) {
+        if (decimated[0].length > 0) {
+            return decimated;
+        }
+        return new double[][] {{minX}, {Double.NaN}};
+    }
+
+    /**
+     * Zooms with the mouse wheel, moves the viewport by dragging and shows everything on a double click.
+     * Updates the series when the size of the panel changes.
+     */
+    private void addListeners() {
+        MouseAdapter mouseAdapter = new MouseAdapter() {
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent event) {
+                double factor = Math.pow(ZOOM_FACTOR, event.getPreciseWheelRotation());
+                double centerX = (minX + maxX) / 2;
+                double centerY = (minY + maxY) / 2;
+                double halfWidth = (maxX - minX) / 2 * factor;
+                double halfHeight = (maxY - minY) / 2 * factor;
+                setViewport(centerX - halfWidth, centerX + halfWidth, centerY - halfHeight, centerY + halfHeight);
+            }
+
+            @Override
+            public void mousePressed(MouseEvent event) {
+                dragX = event.getX();
+                dragY = event.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent event) {
+                // the screen y axis points down, the y axis of the chart points up
+                double deltaX = (event.getX() - dragX) * (maxX - minX) / Math.max(1, panel.getWidth());
+                double deltaY = (event.getY() - dragY) * (maxY - minY) / Math.max(1, panel.getHeight());
+                dragX = event.getX();
+                dragY = event.getY();
+                setViewport(minX - deltaX, maxX - deltaX, minY + deltaY, maxY + deltaY);
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent event) {
+                if (event.getClickCount() == 2) {
+                    resetViewport();
+                }
+            }
+        };
+        panel.addMouseWheelListener(mouseAdapter);
+        panel.addMouseListener(mouseAdapter);
+        panel.addMouseMotionListener(mouseAdapter);
+        panel.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent event) {
+                refreshTimer.restart();
+            }
+        });
+    }
+}
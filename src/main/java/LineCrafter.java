@@ -1,7 +1,11 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Class for calculating line compositions / polylines out of simple lines, with respect to specific constrains.
@@ -14,6 +18,23 @@ import java.util.TreeMap;
  */
 public class LineCrafter {
 
+    // Version of the rules for crafting polylines. Increase it whenever a change of the algorithm can change
+    // the resulting polylines, so that results cached by ResultCache are not used anymore.
+    public static final int RULE_VERSION = 1;
+
+    // Optional index of the lines per point. If it has been built for the lists that are passed to
+    // searchForPoint(), it is used instead of scanning all lines and points.
+    private LineIncidenceIndex incidenceIndex;
+
+    // Optional receiver of the polylines of the recursive CraftConnectedLines(). If it is set, each polyline is
+    // handed to it as soon as it is complete, instead of being added to linienzuege.
+    private PolylineSink recursiveSink;
+
+    // Counters of the available points for the recursive CraftConnectedLines(). They are built at the first call for
+    // a list of points and replace the scans over all points in updateType(), allPointsAreUsed(), isCricle()
+    // and getCurrentPoint().
+    private PointAvailability availability;
+
     /**
      * Converts the list of Integer x,y coordinate pairs to a corresponding list of points with these coordinates.
      * Each inner list from the 2-dimensional input ArrayList is transformed into a list of two points with type 99.
@@ -39,6 +60,25 @@ public class LineCrafter {
         return startList;
     }
 
+    /**
+     * Converts the coordinate columns of InputHandler.readCoordinatesMapped() to a list of lines
+     * described by points, like createStarterList() does for the 2-dimensional list of Integers.
+     * @param coordinates x1, y1, x2, y2 of all lines
+     * @return 2-dimensional ArrayList where each inner list consists of two points with type 99
+     */
+    public ArrayList<ArrayList<Point>> createStarterList(SegmentCoordinates coordinates) {
+
+        ArrayList<ArrayList<Point>> startList = new ArrayList<>(coordinates.size());
+
+        for (int line = 0; line < coordinates.size(); line++) {
+            ArrayList<Point> pointLine = new ArrayList<>(2);
+            pointLine.add(new Point(coordinates.getX1(line), coordinates.getY1(line), 99));
+            pointLine.add(new Point(coordinates.getX2(line), coordinates.getY2(line), 99));
+            startList.add(pointLine);
+        }
+        return startList;
+    }
+
     /**
      * Creates a deep copy of a list of polylines.
      * @param originalList input list
@@ -79,6 +119,20 @@ public class LineCrafter {
      * @return modified input list, where each point has been assigned the correct type.
      */
     public ArrayList<ArrayList<Point>> getAllPointTypes(ArrayList<ArrayList<Point>> startList) {
+        RunMetrics.Phase typingPhase = RunMetrics.startPhase("typing");
+        try {
+            return getAllPointTypesUnmeasured(startList);
+        } finally {
+            typingPhase.close();
+        }
+    }
+
+    /**
+     * Assigns the point types like getAllPointTypes(), which measures this as typing phase (see RunMetrics)
+     * @param startList Input list consisting of lines composed of points
+     * @return modified input list, where each point has been assigned the correct type.
+     */
+    private ArrayList<ArrayList<Point>> getAllPointTypesUnmeasured(ArrayList<ArrayList<Point>> startList) {
 
         for (ArrayList<Point> line : startList) {
             for (Point currentPoint : line) {
@@ -115,6 +169,83 @@ public class LineCrafter {
         return startList;
     }
 
+    /**
+     * Assigns the same point types as getAllPointTypes(), but counts the frequency of the points
+     * in a single pass instead of comparing every point with every other point.
+     * In the first pass every point is added to a hash table that is keyed on its packed x,y coordinates
+     * (see PointKeyTable and Point.key()), which counts the occurrences of each coordinate pair.
+     * In the second pass each point receives the type that belongs to the count of its coordinates.
+     * Runs in linear time instead of quadratic time of getAllPointTypes().
+     * @param startList Input list consisting of lines composed of points
+     * @return modified input list, where each point has been assigned the correct type.
+     */
+    public ArrayList<ArrayList<Point>> getAllPointTypesCounting(ArrayList<ArrayList<Point>> startList) {
+        RunMetrics.Phase typingPhase = RunMetrics.startPhase("typing");
+        try {
+            PointKeyTable pointCounts = new PointKeyTable(startList.size() * 2);
+
+            // first pass: count the occurrence of each x,y coordinate pair
+            for (ArrayList<Point> line : startList) {
+                for (Point point : line) {
+                    pointCounts.add(point.key());
+                }
+            }
+
+            // second pass: set the type of each point based on the counted occurrence
+            for (ArrayList<Point> line : startList) {
+                for (Point point : line) {
+                    int counter = pointCounts.count(pointCounts.indexOf(point.key()));
+                    point.setType(typeForConnectivity(counter));
+                }
+            }
+            return startList;
+        } finally {
+            typingPhase.close();
+        }
+    }
+
+    /**
+     * Assigns the types to the points of a SegmentStore with the same rules as getAllPointTypes().
+     * The connectivity of each point is counted in one pass over the lines, because every distinct point
+     * already has its own id in the store. This replaces getAllPointTypes() and getAllPointsAndSetStartlistTypes()
+     * for the store, as the points of the store are already free of duplicates.
+     * @param store lines and points, the types of the points are overwritten
+     * @return the same store, where each point has been assigned the correct type.
+     */
+    public SegmentStore getAllPointTypes(SegmentStore store) {
+        RunMetrics.Phase typingPhase = RunMetrics.startPhase("typing");
+        try {
+            int[] connectivity = new int[store.pointCount()];
+            for (int line = 0; line < store.lineCount(); line++) {
+                connectivity[store.lineStart(line)]++;
+                connectivity[store.lineEnd(line)]++;
+            }
+            for (int id = 0; id < connectivity.length; id++) {
+                store.setType(id, typeForConnectivity(connectivity[id]));
+            }
+            RunMetrics.countPointTypes(store.typeColumn(), store.pointCount());
+            return store;
+        } finally {
+            typingPhase.close();
+        }
+    }
+
+    /**
+     * Calculates the initial point type for the connectivity of a point, with the same rules as getAllPointTypes().
+     * Connectivity 1 gives type 1 (SP), connectivity 2 gives type 3 (CN) and a connectivity of 3 or more
+     * gives type connectivity + 3 (TER), e.g. 6 for a TER where three lines meet.
+     * @param connectivity number of occurrences of a point in the input data
+     * @return initial type of the point
+     */
+    public static int typeForConnectivity(int connectivity) {
+        if (connectivity >= 3) {
+            return (connectivity * 2) - (connectivity - 3);
+        } else if (connectivity == 2) {
+            return 3;
+        }
+        return connectivity;
+    }
+
 
     /**
      * Converts the 2D list of lines into a simple 1D list of points from these lines.
@@ -124,6 +255,29 @@ public class LineCrafter {
      * @return simple list of all points from the input file with their types.
      */
     public ArrayList<Point> getAllPointsAndSetStartlistTypes(ArrayList<ArrayList<Point>> startList){
+        RunMetrics.Phase typingPhase = RunMetrics.startPhase("typing");
+        try {
+            ArrayList<Point> SPandCNandTER = getAllPointsAndSetStartlistTypesUnmeasured(startList);
+            if (RunMetrics.isEnabled()) {
+                int[] types = new int[SPandCNandTER.size()];
+                for (int id = 0; id < types.length; id++) {
+                    types[id] = SPandCNandTER.get(id).getType();
+                }
+                RunMetrics.countPointTypes(types, types.length);
+            }
+            return SPandCNandTER;
+        } finally {
+            typingPhase.close();
+        }
+    }
+
+    /**
+     * Creates the list of points like getAllPointsAndSetStartlistTypes(), which measures this as typing phase
+     * and counts the point types (see RunMetrics)
+     * @param startList List of all lines that contain points and their types.
+     * @return simple list of all points from the input file with their types.
+     */
+    private ArrayList<Point> getAllPointsAndSetStartlistTypesUnmeasured(ArrayList<ArrayList<Point>> startList){
         ArrayList<Point> SPandCNandTER = new ArrayList<>();
 
         for (ArrayList<Point> line: startList
@@ -152,12 +306,36 @@ public class LineCrafter {
     }
 
 
+    /**
+     * Builds an index of the incident lines of each point, which searchForPoint() then uses for these lists.
+     * With the index, finding the next point costs O(degree) of the current point instead of
+     * O(lines * points). The result of searchForPoint() stays the same. Must be called after
+     * getAllPointsAndSetStartlistTypes() and before the polylines are crafted.
+     * @param starterList List of all lines that contain points and their types.
+     * @param SPandCNandTER List of all points with their types.
+     * @return the index that has been built
+     */
+    public LineIncidenceIndex buildIncidenceIndex(ArrayList<ArrayList<Point>> starterList, ArrayList<Point> SPandCNandTER) {
+        RunMetrics.Phase indexingPhase = RunMetrics.startPhase("indexing");
+        try {
+            incidenceIndex = new LineIncidenceIndex(starterList, SPandCNandTER);
+            return incidenceIndex;
+        } finally {
+            indexingPhase.close();
+        }
+    }
+
+
     /**
      * Checks for a list of points whether all have type 0 and therefore have been used.
      * @param SPandCNandTER List of points
+     * During the recursive CraftConnectedLines(), the counters of PointAvailability answer this in O(1).
      * @return true if all points have type 0 and have been used, false otherwise.
      */
     private boolean allPointsAreUsed(ArrayList<Point> SPandCNandTER) {
+        if (availability != null && availability.isBuiltFor(SPandCNandTER)) {
+            return availability.allPointsAreUsed();
+        }
         for (Point point : SPandCNandTER) {
             if (point.getType() != 0) {
                 return false;
@@ -169,9 +347,13 @@ public class LineCrafter {
     /**
      * Checks if the remaining list contains a circular structure and has only connectors
      * @param SPandCNandTER contains the available points and their types
+     * During the recursive CraftConnectedLines(), the counters of PointAvailability answer this in O(1).
      * @return true if there are only connectors left to use, false otherwise
      */
     private boolean isCricle(ArrayList<Point> SPandCNandTER) {
+        if (availability != null && availability.isBuiltFor(SPandCNandTER)) {
+            return availability.onlyConnectorsLeft();
+        }
         for (Point point : SPandCNandTER) {
             if (point.getType() != 2 && point.getType() != 3 && point.getType() != 0) {
                 return false;
@@ -185,12 +367,17 @@ public class LineCrafter {
      * If a current polyline is passed, work continues on it, and the current point is the last
      * point in this polyline, which is then returned. If no polyline is in the process of being built,
      * another valid point is returned. Priority is: TER > SP > CN
+     * During the recursive CraftConnectedLines(), this point is found in amortized O(1) by PointAvailability.
      * @param SPandCNandTER List of all points
      * @param linienZug polyline being currently built. If the list is empty, no polyline is being built.
      * @return Point with which to continue working.
      */
     public Point getCurrentPoint(ArrayList<Point> SPandCNandTER,
                                  ArrayList<Point> linienZug){
+        if ( linienZug.isEmpty() && availability != null && availability.isBuiltFor(SPandCNandTER)) {
+            // during the recursive CraftConnectedLines(), the start point comes from the buckets of PointAvailability
+            return availability.nextStartPoint();
+        }
         if ( linienZug.isEmpty()){
             // if no line is being build, start with TER, then SP then CN
             for (Point point: SPandCNandTER
@@ -233,6 +420,18 @@ public class LineCrafter {
                                 Point currentPoint,
                                 ArrayList<ArrayList<Point>> starterList
     ) {
+        RunMetrics.add(RunMetrics.Counter.SEARCH_STEPS, 1);
+
+        // use the index of incident lines, if it has been built for these lists
+        if (incidenceIndex != null && incidenceIndex.isBuiltFor(starterList, SPandCNandTER)) {
+            int pointId = incidenceIndex.idOf(currentPoint);
+            int line = pointId < 0 ? -1 : incidenceIndex.takeNextLine(pointId);
+            if (line < 0) {
+                return null;
+            }
+            return incidenceIndex.point(incidenceIndex.otherEnd(line, pointId));
+        }
+
         for (ArrayList<Point> line : starterList) {
             for (Point otherPoint : SPandCNandTER
             ) {
@@ -292,12 +491,19 @@ public class LineCrafter {
      * If the connector point has already been used once (type 2), it is marked as no longer available (type 0).
      * For details on update logic for TER, see documentation for the the pint class or getAllPointTypes() function.
      * Example update of TER (connectivity = 3 therefore initial type = 6) goes as following: 6 -> 5 -> 4 -> 0
+     * During the recursive CraftConnectedLines(), the point is found in O(1) by PointAvailability.
      * @param SPandCNandTER contains available points with types
      * @param currentPoint current point whose type is being updated.
      */
     public void updateType (ArrayList<Point> SPandCNandTER,
                             Point currentPoint){
 
+        // with the counters of the available points, the point is found by its coordinates in O(1)
+        if (availability != null && availability.isBuiltFor(SPandCNandTER)) {
+            availability.use(currentPoint);
+            return;
+        }
+
         // if the reference of currentpoint and point in SinglePointsAndConnectors is the same,
         // equals method will return false for a comparison. Therefore a simple workaround with a copy
         // to compare the points, and if same, update the type
@@ -307,22 +513,28 @@ public class LineCrafter {
         for (Point point: SPandCNandTER
         ) {
             if (point.equals(pointCopy)){
-                if (currentPointType == 1){
-                    point.setType(0);
-                } else if (currentPointType == 3) {
-                    point.setType(2);
-                } else if (currentPointType == 2) {
-                    point.setType(0);
-                } else if (currentPointType > 4) {
-                    int newtype = currentPointType -1;
-                    point.setType(newtype);
-                } else if (currentPointType == 4){
-                    point.setType(0);
-                }
+                point.setType(typeAfterUse(currentPointType));
             }
         }
     }
 
+    /**
+     * Calculates the type of a point after it has been used once for a line (see updateType()).
+     * SP: 1 -> 0, CN: 3 -> 2 -> 0, TER: for example 6 -> 5 -> 4 -> 0
+     * @param type type of the point before its usage
+     * @return type of the point after its usage. Types without a defined successor are returned unchanged.
+     */
+    public static int typeAfterUse(int type) {
+        if (type == 1 || type == 2 || type == 4) {
+            return 0;
+        } else if (type == 3) {
+            return 2;
+        } else if (type > 4) {
+            return type - 1;
+        }
+        return type;
+    }
+
     /**
      * Recursive algorithm for forming polylines including terminators (option 2).
      * It starts with a valid point from SPandCNandTER for which another point is found so that
@@ -353,10 +565,16 @@ public class LineCrafter {
             ArrayList<Point> linienZug,
             ArrayList<ArrayList<Point>> linienzuege) {
 
+        // Count the available points once, so that the checks and type updates of each step cost O(1).
+        if (availability == null || !availability.isBuiltFor(SPandCNandTER)) {
+            availability = new PointAvailability(SPandCNandTER);
+        }
 
         // Base case: When no points are left to form a polyline,
         // terminate the recursion and return the updated list of polylines.
+        // The counters are dropped, so that the next run on the list counts its types again.
         if (allPointsAreUsed(SPandCNandTER)) {
+            availability = null;
             return linienzuege;
         }
 
@@ -424,7 +642,7 @@ public class LineCrafter {
                 // A circular structure will end in this case (when current and next point are CNs).
                 // but after all types are 0, this circle has to be appended to the final list of polylines
                 if (allPointsAreUsed(SPandCNandTER)){
-                    linienzuege.add(linienZug);
+                    completePolyline(linienZug, linienzuege);
                 }
 
                 if (linienZug.isEmpty()){
@@ -456,6 +674,34 @@ public class LineCrafter {
         return null;
     }
 
+    /**
+     * Crafts the polylines with the recursive CraftConnectedLines(), but hands each polyline to a sink as soon as
+     * endLineAddLineToPolylinesUpdateTypes() or endPolylineElongationUpdateTypes() has completed it, instead of
+     * collecting all polylines in linienzuege. Like this, the polylines do not have to be kept in memory together
+     * (see e.g. PrintingPolylineSink).
+     * The crafting is measured here as one crafting phase (see RunMetrics), not in each step of the recursion.
+     * @param starterList holds all initial standard lines from the input file.
+     * @param SPandCNandTER contains all SPs an CNs and TERs from starterList with their types.
+     * @param sink receives every polyline in the order in which they are completed
+     * @throws IllegalStateException if the recursive CraftConnectedLines() fails (returns null), e.g. for circles
+     *                               that are not connected to each other
+     */
+    public void CraftConnectedLines(ArrayList<ArrayList<Point>> starterList, ArrayList<Point> SPandCNandTER,
+                                    PolylineSink sink) {
+        recursiveSink = sink;
+        availability = null;
+        RunMetrics.Phase craftingPhase = RunMetrics.startPhase("crafting");
+        try {
+            if (CraftConnectedLines(starterList, SPandCNandTER, new ArrayList<>(), new ArrayList<>()) == null) {
+                throw new IllegalStateException("The recursive crafting could not combine all lines into polylines");
+            }
+        } finally {
+            recursiveSink = null;
+            availability = null;
+            craftingPhase.close();
+        }
+    }
+
     /**
      * Method is called inside of CraftConnectedLines() and calls that same function recursively.
      * For a given combination of points nextpoint is a point that ends the line or polyline.
@@ -479,7 +725,7 @@ public class LineCrafter {
         ArrayList<Point> linienzug = new ArrayList<>();
         linienzug.add(currentPoint);
         linienzug.add(nextPoint);
-        linienzuege.add(new ArrayList<>(linienzug));
+        completePolyline(new ArrayList<>(linienzug), linienzuege);
         linienzug.clear();
 
         //both points get type update
@@ -511,7 +757,7 @@ public class LineCrafter {
                                                                 ArrayList<ArrayList<Point>> linienzuege,
                                                                         ArrayList<Point> linienZug ){
         linienZug.add(nextPoint);
-        linienzuege.add(new ArrayList<>(linienZug));
+        completePolyline(new ArrayList<>(linienZug), linienzuege);
         linienZug.clear();
         updateType(SPandCNandTER,currentPoint);
         updateType(SPandCNandTER,nextPoint);
@@ -546,6 +792,504 @@ public class LineCrafter {
         return CraftConnectedLines(starterList,SPandCNandTER,linienzug,linienzuege);
     }
 
+    /**
+     * Iterative algorithm for forming polylines including terminators (option 2).
+     * Produces the same polylines in the same order as CraftConnectedLines(), but works with an explicit loop
+     * instead of recursion. The stack depth is therefore constant and does not grow with the number of lines.
+     * Each pass of the loop consumes one line, like one recursive call of CraftConnectedLines():
+     * If no polyline is being built, a new one is started at the next available point (TER > SP > CN, see
+     * getCurrentPoint()). Otherwise the last point of the polyline being built is the current point.
+     * The next point is found with the priority of searchForPoint() (CN > SP > TER), and both points are updated
+     * in type (see updateType()). If the next point is an SP or TER, the polyline is complete and added to the
+     * list of polylines. If it is a CN, the polyline is elongated in the next pass.
+     * All lookups work with the LineIncidenceIndex and with point ids, so that every step costs O(1) amortized
+     * and the whole algorithm runs in linear time. The start points are found with one cursor per type group
+     * (TER, SP, CN), which only moves forward, because points never change their type group and
+     * never become available again once they have type 0.
+     * In contrast to CraftConnectedLines(), a circular polyline is also completed if further circles are left
+     * afterwards. The recursive implementation fails in this case.
+     * @param starterList holds all initial standard lines from the input file.
+     *                   point types here are all 1, and will be set to 0 after the line has been used.
+     * @param SPandCNandTER contains all SPs an CNs and TERs from starterList with their types.
+     *                      All types are 0 after the polylines have been crafted.
+     * @return complete list of all polylines that have been found (linienzuege)
+     */
+    public ArrayList<ArrayList<Point>> CraftConnectedLinesIterative(ArrayList<ArrayList<Point>> starterList,
+                                                                    ArrayList<Point> SPandCNandTER) {
+
+        // reuse the index, if it has been built for these lists
+        LineIncidenceIndex index = incidenceIndex;
+        if (index == null || !index.isBuiltFor(starterList, SPandCNandTER)) {
+            index = new LineIncidenceIndex(starterList, SPandCNandTER);
+        }
+
+        ArrayList<ArrayList<Point>> linienzuege = new ArrayList<>();
+        craftWithIndex(index, linienzuege::add);
+        return linienzuege;
+    }
+
+    /**
+     * Crafts the polylines like CraftConnectedLinesIterative(), but hands each polyline to a sink as soon as it
+     * is complete, instead of collecting all polylines in a list. Like this, the caller decides which polylines
+     * are kept (see e.g. TopKPolylines).
+     * @param starterList holds all initial standard lines from the input file.
+     * @param SPandCNandTER contains all SPs an CNs and TERs from starterList with their types.
+     *                      All types are 0 after the polylines have been crafted.
+     * @param sink receives every polyline in the order in which they are completed
+     */
+    public void CraftConnectedLinesIterative(ArrayList<ArrayList<Point>> starterList,
+                                             ArrayList<Point> SPandCNandTER,
+                                             PolylineSink sink) {
+        LineIncidenceIndex index = incidenceIndex;
+        if (index == null || !index.isBuiltFor(starterList, SPandCNandTER)) {
+            index = new LineIncidenceIndex(starterList, SPandCNandTER);
+        }
+        craftWithIndex(index, sink);
+    }
+
+    /**
+     * Runs the iterative algorithm for an index that was built from a starter list and translates
+     * the point ids of each finished polyline back to the points of SPandCNandTER.
+     * @param index index built from the starter list and SPandCNandTER
+     * @param sink receives every polyline
+     */
+    private void craftWithIndex(LineIncidenceIndex index, PolylineSink sink) {
+        RunMetrics.Phase craftingPhase = RunMetrics.startPhase("crafting");
+        try {
+            // the types are kept in an array during the loop and are written back to the points at the end
+            int pointCount = index.pointCount();
+            int[] types = new int[pointCount];
+            for (int id = 0; id < pointCount; id++) {
+                types[id] = index.point(id).getType();
+            }
+
+            craftPolylines(index, types, (linienZug, length) -> {
+                ArrayList<Point> linienzug = new ArrayList<>(length);
+                for (int position = 0; position < length; position++) {
+                    linienzug.add(index.point(linienZug[position]));
+                }
+                sink.accept(linienzug);
+            });
+
+            for (int id = 0; id < pointCount; id++) {
+                index.point(id).setType(types[id]);
+            }
+            // the types have been changed without the counters of the recursive algorithm
+            availability = null;
+        } finally {
+            craftingPhase.close();
+        }
+    }
+
+    /**
+     * Crafts the polylines for the lines of a SegmentStore with the same algorithm as CraftConnectedLinesIterative(),
+     * but without any Point objects. The types of the points have to be assigned before (see getAllPointTypes(SegmentStore)).
+     * Like the types in SPandCNandTER, the types in the store are used up and are all 0 afterwards.
+     * @param store lines and points with their types
+     * @return list of all polylines, each as a sequence of point ids of the store
+     */
+    public PolylineList CraftConnectedLines(SegmentStore store) {
+        RunMetrics.Phase craftingPhase = RunMetrics.startPhase("crafting");
+        try {
+            PolylineList polylines = new PolylineList();
+            craftPolylines(new LineIncidenceIndex(store), store.typeColumn(), polylines::add);
+            return polylines;
+        } finally {
+            craftingPhase.close();
+        }
+    }
+
+    /**
+     * Crafts the polylines for lines that are given by the ids of their two points, with the same algorithm as
+     * CraftConnectedLines(SegmentStore). This allows to craft a part of a network, e.g. the lines that are
+     * re-crafted by IncrementalPolylines after a change.
+     * @param lineStart id of the first point of each line
+     * @param lineEnd id of the second point of each line
+     * @param lineCount number of lines, the first lineCount entries of the arrays are used
+     * @param types type of each point, the types are used up and are all 0 afterwards
+     * @param pointCount number of points, point ids range from 0 to pointCount-1
+     * @return list of all polylines, each as a sequence of point ids
+     */
+    public PolylineList CraftConnectedLines(int[] lineStart, int[] lineEnd, int lineCount, int[] types, int pointCount) {
+        RunMetrics.Phase craftingPhase = RunMetrics.startPhase("crafting");
+        try {
+            PolylineList polylines = new PolylineList();
+            craftPolylines(new LineIncidenceIndex(lineStart, lineEnd, lineCount, types, pointCount), types, polylines::add);
+            return polylines;
+        } finally {
+            craftingPhase.close();
+        }
+    }
+
+    /**
+     * Crafts the polylines of a SegmentStore like CraftConnectedLines(SegmentStore), but hands each polyline to a
+     * sink as soon as it is complete. Only the polyline that is handed over is converted to Point objects.
+     * @param store lines and points with their types, the types are all 0 afterwards
+     * @param sink receives every polyline in the order in which they are completed
+     */
+    public void CraftConnectedLines(SegmentStore store, PolylineSink sink) {
+        RunMetrics.Phase craftingPhase = RunMetrics.startPhase("crafting");
+        try {
+            craftPolylines(new LineIncidenceIndex(store), store.typeColumn(), (linienZug, length) -> {
+                ArrayList<Point> linienzug = new ArrayList<>(length);
+                for (int position = 0; position < length; position++) {
+                    linienzug.add(store.toPoint(linienZug[position]));
+                }
+                sink.accept(linienzug);
+            });
+        } finally {
+            craftingPhase.close();
+        }
+    }
+
+    /**
+     * Crafts the polylines like CraftConnectedLinesIterative(), but splits the lines into connected components
+     * first (see ConnectedComponents) and crafts the components in parallel on a ForkJoinPool.
+     * Polylines never leave their component, and within a component the same start points are chosen as for
+     * the whole input. Therefore the result contains the same polylines as CraftConnectedLinesIterative().
+     * Only their order differs: the polylines are grouped by component, and the components are ordered by their
+     * first line in the starter list. The order is the same for every run, independent of the number of threads.
+     * @param starterList holds all initial standard lines from the input file.
+     *                   point types here are all 1, and will be set to 0 after the line has been used.
+     * @param SPandCNandTER contains all SPs an CNs and TERs from starterList with their types.
+     *                      All types are 0 after the polylines have been crafted.
+     * @param pool pool whose threads craft the components
+     * @return complete list of all polylines that have been found (linienzuege)
+     */
+    public ArrayList<ArrayList<Point>> CraftConnectedLinesParallel(ArrayList<ArrayList<Point>> starterList,
+                                                                   ArrayList<Point> SPandCNandTER,
+                                                                   ForkJoinPool pool) {
+        RunMetrics.Phase craftingPhase = RunMetrics.startPhase("crafting");
+        try {
+            // the id of a point is its position in SPandCNandTER
+            PointKeyTable pointIds = new PointKeyTable(SPandCNandTER.size());
+            int[] types = new int[SPandCNandTER.size()];
+            for (Point point : SPandCNandTER) {
+                types[pointIds.idOf(point.key())] = point.getType();
+            }
+            int pointCount = pointIds.size();
+
+            int lineCount = starterList.size();
+            int[] lineStart = new int[lineCount];
+            int[] lineEnd = new int[lineCount];
+            for (int line = 0; line < lineCount; line++) {
+                lineStart[line] = pointIds.indexOf(starterList.get(line).get(0).key());
+                lineEnd[line] = pointIds.indexOf(starterList.get(line).get(1).key());
+                if (lineStart[line] < 0 || lineEnd[line] < 0) {
+                    throw new IllegalArgumentException("Line " + starterList.get(line) + " has a point that is missing in SPandCNandTER");
+                }
+            }
+
+            boolean[] usedLines = new boolean[lineCount];
+            PolylineList polylines = craftComponents(lineStart, lineEnd, lineCount, types, pointCount, usedLines, pool);
+
+            // write back the types and mark the used lines as deleted in the starter list
+            Point[] points = new Point[pointCount];
+            for (Point point : SPandCNandTER) {
+                int id = pointIds.indexOf(point.key());
+                point.setType(types[id]);
+                if (points[id] == null) {
+                    points[id] = point;
+                }
+            }
+            for (int line = 0; line < lineCount; line++) {
+                if (usedLines[line]) {
+                    starterList.get(line).get(0).setType(0);
+                    starterList.get(line).get(1).setType(0);
+                }
+            }
+
+            ArrayList<ArrayList<Point>> linienzuege = new ArrayList<>(polylines.size());
+            for (int polyline = 0; polyline < polylines.size(); polyline++) {
+                ArrayList<Point> linienzug = new ArrayList<>(polylines.pointCount(polyline));
+                for (int position = 0; position < polylines.pointCount(polyline); position++) {
+                    linienzug.add(points[polylines.pointId(polyline, position)]);
+                }
+                linienzuege.add(linienzug);
+            }
+            return linienzuege;
+        } finally {
+            craftingPhase.close();
+        }
+    }
+
+    /**
+     * Crafts the polylines of a SegmentStore like CraftConnectedLines(SegmentStore), but crafts the connected
+     * components in parallel (see CraftConnectedLinesParallel() for the starter list).
+     * @param store lines and points with their types, the types are all 0 afterwards
+     * @param pool pool whose threads craft the components
+     * @return list of all polylines, grouped by component, each as a sequence of point ids of the store
+     */
+    public PolylineList CraftConnectedLinesParallel(SegmentStore store, ForkJoinPool pool) {
+        RunMetrics.Phase craftingPhase = RunMetrics.startPhase("crafting");
+        try {
+            return craftComponents(store.lineStartColumn(), store.lineEndColumn(), store.lineCount(),
+                    store.typeColumn(), store.pointCount(), new boolean[store.lineCount()], pool);
+        } finally {
+            craftingPhase.close();
+        }
+    }
+
+    /**
+     * Splits the lines into connected components and crafts them in parallel.
+     * Every component gets its own ids for its points and lines, so that each component is crafted with
+     * its own small LineIncidenceIndex. The tasks write only to the entries of their own components in
+     * types and usedLines, so they do not interfere with each other.
+     * @param lineStart id of the first point of each line
+     * @param lineEnd id of the second point of each line
+     * @param lineCount number of lines
+     * @param types type of each point, is updated like in craftPolylines()
+     * @param pointCount number of points
+     * @param usedLines receives for each line whether it has been used for a polyline
+     * @param pool pool whose threads craft the components
+     * @return polylines with the point ids of the input, grouped by component in the order of the components
+     */
+    private PolylineList craftComponents(int[] lineStart, int[] lineEnd, int lineCount, int[] types, int pointCount,
+                                         boolean[] usedLines, ForkJoinPool pool) {
+
+        ConnectedComponents components = new ConnectedComponents(lineStart, lineEnd, lineCount, pointCount);
+
+        // Small components are grouped into one task, so that the tasks are not too small.
+        int linesPerTask = Math.max(4096, lineCount / (pool.getParallelism() * 8));
+        int[] localIds = new int[pointCount];
+
+        ArrayList<PolylineList> parts = pool.invoke(new ComponentTask(components, 0, components.count(), linesPerTask,
+                lineStart, lineEnd, types, localIds, usedLines));
+
+        PolylineList polylines = new PolylineList();
+        for (PolylineList part : parts) {
+            polylines.addAll(part);
+        }
+        return polylines;
+    }
+
+    /**
+     * Task that crafts a range of connected components. Ranges with many lines are split in two halves.
+     * The result is the list of polylines of each part of the range, in the order of the components.
+     */
+    private class ComponentTask extends RecursiveTask<ArrayList<PolylineList>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ConnectedComponents components;
+        // range of components of this task
+        private final int from;
+        private final int to;
+        private final int linesPerTask;
+        private final int[] lineStart;
+        private final int[] lineEnd;
+        private final int[] types;
+        // id of each point within its component
+        private final int[] localIds;
+        private final boolean[] usedLines;
+
+        ComponentTask(ConnectedComponents components, int from, int to, int linesPerTask,
+                      int[] lineStart, int[] lineEnd, int[] types, int[] localIds, boolean[] usedLines) {
+            this.components = components;
+            this.from = from;
+            this.to = to;
+            this.linesPerTask = linesPerTask;
+            this.lineStart = lineStart;
+            this.lineEnd = lineEnd;
+            this.types = types;
+            this.localIds = localIds;
+            this.usedLines = usedLines;
+        }
+
+        @Override
+        protected ArrayList<PolylineList> compute() {
+            int lines = 0;
+            for (int component = from; component < to && lines <= linesPerTask; component++) {
+                lines += components.lineCount(component);
+            }
+
+            if (lines > linesPerTask && to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ComponentTask left = new ComponentTask(components, from, middle, linesPerTask,
+                        lineStart, lineEnd, types, localIds, usedLines);
+                ComponentTask right = new ComponentTask(components, middle, to, linesPerTask,
+                        lineStart, lineEnd, types, localIds, usedLines);
+                right.fork();
+                ArrayList<PolylineList> result = left.compute();
+                result.addAll(right.join());
+                return result;
+            }
+
+            PolylineList polylines = new PolylineList();
+            for (int component = from; component < to; component++) {
+                craftComponent(component, polylines);
+            }
+            ArrayList<PolylineList> result = new ArrayList<>();
+            result.add(polylines);
+            return result;
+        }
+
+        /**
+         * Crafts the polylines of one component with the ids of its points within the component.
+         * Points are numbered in ascending order of their ids, so that the start points are chosen in the
+         * same order as for the whole input.
+         * @param component number of the component
+         * @param polylines receives the polylines of the component with the original point ids
+         */
+        private void craftComponent(int component, PolylineList polylines) {
+            int pointCount = components.pointCount(component);
+            int[] componentTypes = new int[pointCount];
+            for (int position = 0; position < pointCount; position++) {
+                int id = components.point(component, position);
+                localIds[id] = position;
+                componentTypes[position] = types[id];
+            }
+
+            int lineCount = components.lineCount(component);
+            int[] componentStart = new int[lineCount];
+            int[] componentEnd = new int[lineCount];
+            for (int position = 0; position < lineCount; position++) {
+                int line = components.line(component, position);
+                componentStart[position] = localIds[lineStart[line]];
+                componentEnd[position] = localIds[lineEnd[line]];
+            }
+
+            LineIncidenceIndex index = new LineIncidenceIndex(componentStart, componentEnd, lineCount, componentTypes, pointCount);
+            PolylineList componentPolylines = new PolylineList();
+            craftPolylines(index, componentTypes, componentPolylines::add);
+
+            for (int position = 0; position < pointCount; position++) {
+                types[components.point(component, position)] = componentTypes[position];
+            }
+            for (int position = 0; position < lineCount; position++) {
+                usedLines[components.line(component, position)] = index.isUsed(position);
+            }
+
+            // translate the point ids back to the ids of the whole input
+            int[] linienZug = new int[16];
+            for (int polyline = 0; polyline < componentPolylines.size(); polyline++) {
+                int length = componentPolylines.pointCount(polyline);
+                if (length > linienZug.length) {
+                    linienZug = new int[length];
+                }
+                for (int position = 0; position < length; position++) {
+                    linienZug[position] = components.point(component, componentPolylines.pointId(polyline, position));
+                }
+                polylines.add(linienZug, length);
+            }
+        }
+    }
+
+    /**
+     * Loop of the iterative algorithm, which works on point ids only (see CraftConnectedLinesIterative()).
+     * @param index incident lines of each point, the used lines are marked in it
+     * @param types type of each point id, is updated after every usage of a point
+     * @param polylines receives each polyline as soon as it is complete, as an array of point ids and its length.
+     *                  The array is reused for the next polyline.
+     */
+    private void craftPolylines(LineIncidenceIndex index, int[] types, ObjIntConsumer<int[]> polylines) {
+
+        int pointCount = index.pointCount();
+
+        // ids of the points of the polyline being built
+        int[] linienZug = new int[16];
+        int linienZugLength = 0;
+
+        // positions from which the search for the next start point of each type group continues
+        int nextTer = 0;
+        int nextSp = 0;
+        int nextCn = 0;
+
+        // counted locally and added to the metrics at the end
+        long searchSteps = 0;
+        long polylineCount = 0;
+        long closedLoops = 0;
+
+        while (true) {
+            int currentPoint;
+            if (linienZugLength == 0) {
+                // no polyline is being built: start with TER, then SP, then CN
+                while (nextTer < pointCount && types[nextTer] < 4) {
+                    nextTer++;
+                }
+                while (nextSp < pointCount && types[nextSp] != 1) {
+                    nextSp++;
+                }
+                while (nextCn < pointCount && types[nextCn] != 2 && types[nextCn] != 3) {
+                    nextCn++;
+                }
+                if (nextTer < pointCount) {
+                    currentPoint = nextTer;
+                } else if (nextSp < pointCount) {
+                    currentPoint = nextSp;
+                } else if (nextCn < pointCount) {
+                    currentPoint = nextCn;
+                } else {
+                    // all points have been used
+                    break;
+                }
+                linienZug[linienZugLength++] = currentPoint;
+            } else {
+                // a polyline is being built, and the current point is the last element of it
+                currentPoint = linienZug[linienZugLength - 1];
+            }
+
+            int line = index.takeNextLine(currentPoint);
+            searchSteps++;
+            if (line < 0) {
+                throw new IllegalStateException("No unused line left for point with id " + currentPoint);
+            }
+            int nextPoint = index.otherEnd(line, currentPoint);
+
+            if (linienZugLength == linienZug.length) {
+                linienZug = Arrays.copyOf(linienZug, linienZugLength * 2);
+            }
+            linienZug[linienZugLength++] = nextPoint;
+
+            // update types of the used points accordingly
+            boolean nextIsConnector = types[nextPoint] == 2 || types[nextPoint] == 3;
+            types[currentPoint] = typeAfterUse(types[currentPoint]);
+            types[nextPoint] = typeAfterUse(types[nextPoint]);
+
+            // An SP or TER ends the polyline. A CN that has been used up closes a circular polyline.
+            if (!nextIsConnector || types[nextPoint] == 0) {
+                polylines.accept(linienZug, linienZugLength);
+                polylineCount++;
+                if (linienZugLength > 2 && linienZug[0] == nextPoint) {
+                    closedLoops++;
+                }
+                linienZugLength = 0;
+            }
+        }
+
+        RunMetrics.add(RunMetrics.Counter.SEARCH_STEPS, searchSteps);
+        RunMetrics.add(RunMetrics.Counter.POLYLINES, polylineCount);
+        RunMetrics.add(RunMetrics.Counter.CLOSED_LOOPS, closedLoops);
+    }
+
+    /**
+     * Hands a polyline that the recursive CraftConnectedLines() has completed to the sink, if one is set,
+     * or adds it to the list of polylines. The polyline is also counted in the metrics (see RunMetrics),
+     * a polyline that ends in its first point is counted as closed loop.
+     * Empty polylines are skipped. The circle branch of CraftConnectedLines() completes the polyline that is being
+     * elongated even if it is still empty, e.g. for a line from a point to itself.
+     * @param linienzug the complete polyline
+     * @param linienzuege list of polylines crafted so far
+     */
+    private void completePolyline(ArrayList<Point> linienzug, ArrayList<ArrayList<Point>> linienzuege) {
+        if (linienzug.isEmpty()) {
+            return;
+        }
+        if (RunMetrics.isEnabled()) {
+            Point first = linienzug.get(0);
+            Point last = linienzug.get(linienzug.size() - 1);
+            RunMetrics.add(RunMetrics.Counter.POLYLINES, 1);
+            if (linienzug.size() > 2 && first.getX() == last.getX() && first.getY() == last.getY()) {
+                RunMetrics.add(RunMetrics.Counter.CLOSED_LOOPS, 1);
+            }
+        }
+        if (recursiveSink != null) {
+            recursiveSink.accept(linienzug);
+        } else {
+            linienzuege.add(linienzug);
+        }
+    }
+
     /**
      * Calculates the distance between two points in a Cartesian coordinate system,
      * using the Pythagoras theorem.
@@ -569,6 +1313,20 @@ public class LineCrafter {
      * @return Map of polylines sorted in descending order based on their length.
      */
     public Map<Double, ArrayList<Point>> sortLinienzuege (ArrayList<ArrayList<Point>> linienzuege){
+        RunMetrics.Phase rankingPhase = RunMetrics.startPhase("ranking");
+        try {
+            return sortLinienzuegeUnmeasured(linienzuege);
+        } finally {
+            rankingPhase.close();
+        }
+    }
+
+    /**
+     * Sorts the polylines like sortLinienzuege(), which measures this as ranking phase (see RunMetrics)
+     * @param linienzuege list of polylines
+     * @return map of the polylines with their lengths in descending order
+     */
+    private Map<Double, ArrayList<Point>> sortLinienzuegeUnmeasured(ArrayList<ArrayList<Point>> linienzuege){
 
         // TreeMap to keep fixed order receives reverse comparator as input.
         Map<Double, ArrayList<Point>> distances = new TreeMap<>(Collections.reverseOrder());
@@ -583,4 +1341,41 @@ public class LineCrafter {
         }
         return distances;
     }
+
+    /**
+     * Ranks a list of polylines by their length in descending order, like sortLinienzuege(),
+     * but keeps all polylines, also if several have the same length.
+     * The lengths are calculated into a double array, and the polylines are sorted by their index
+     * (see PolylineRanking). The lengths of the ranked polylines are available from the ranking.
+     * @param linienzuege List of polylines, where each polyline consists of multiple points.
+     * @return ranking of all polylines, the longest polyline has rank 0.
+     */
+    public PolylineRanking rankLinienzuege(ArrayList<ArrayList<Point>> linienzuege) {
+        RunMetrics.Phase rankingPhase = RunMetrics.startPhase("ranking");
+        try {
+            double[] lengths = new double[linienzuege.size()];
+            for (int index = 0; index < lengths.length; index++) {
+                lengths[index] = calculateLength(linienzuege.get(index));
+            }
+            return new PolylineRanking(linienzuege, lengths);
+        } finally {
+            rankingPhase.close();
+        }
+    }
+
+    /**
+     * Calculates the length of a polyline, which is the sum of the lengths of the lines that it is build of
+     * (see calculateDistance()).
+     * @param linienzug polyline consisting of consecutive points
+     * @return length of the polyline
+     */
+    public static double calculateLength(ArrayList<Point> linienzug) {
+        double sum = 0;
+        for (int i = 0; i < linienzug.size()-1; i++) {
+            int deltaX = linienzug.get(i+1).getX() - linienzug.get(i).getX();
+            int deltaY = linienzug.get(i+1).getY() - linienzug.get(i).getY();
+            sum += Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        }
+        return sum;
+    }
 }
@@ -0,0 +1,275 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * Index from each point to the lines of the starter list that begin or end in this point.
+ * It is built once before the polylines are crafted and replaces the full scans over all lines and all points
+ * in LineCrafter.searchForPoint().
+ * Points are identified by an id, which is their position in the SPandCNandTER list. Lines are identified by
+ * their position in the starter list. Used lines are recorded in a bitset.
+ * The incident lines of a point are stored in the order in which searchForPoint() picks them:
+ * first all lines that lead to a CN, then all lines that lead to a SP, then all lines that lead to a TER,
+ * each group in the order of the starter list. The type group of a point (SP, CN, TER) never changes
+ * while the polylines are crafted, only its remaining usages do. Therefore the next line of a point is
+ * always the first unused line in this order, and finding it costs O(degree) at most.
+ * A cursor per point skips the lines at the front that have already been used, so that over the whole
+ * crafting process every incident line is only passed once.
+ * The index can also be built from the columns of a SegmentStore or from plain id arrays, then it works on ids only.
+ */
+public class LineIncidenceIndex {
+
+    // order in which the neighbour types are picked (CN > SP > TER)
+    private static final int RANK_CN = 0;
+    private static final int RANK_SP = 1;
+    private static final int RANK_TER = 2;
+    static final int RANK_UNUSABLE = 3;
+
+    // lists the index was built from, null if it was built from a SegmentStore
+    private final ArrayList<ArrayList<Point>> starterList;
+    private final ArrayList<Point> SPandCNandTER;
+
+    // id for the x,y coordinates of each point, null if it was built from a SegmentStore
+    private final PointKeyTable pointIds;
+    // point from SPandCNandTER for each id, null if it was built from a SegmentStore
+    private final Point[] points;
+    // number of points
+    private final int pointCount;
+    // ids of the two points of each line
+    private final int[] lineStart;
+    private final int[] lineEnd;
+    // number of lines
+    private final int lineCount;
+    // incident lines of point p are incidentLines[incidenceOffsets[p]] to incidentLines[incidenceOffsets[p+1]-1]
+    private int[] incidenceOffsets;
+    private int[] incidentLines;
+    // position of the first incident line of each point that might still be unused
+    private int[] cursor;
+    // lines that have already been used for a polyline
+    private final BitSet usedLines;
+
+    /**
+     * Builds the index for a starter list and the matching list of points, as created by
+     * LineCrafter.getAllPointsAndSetStartlistTypes(). It has to be built before the polylines are crafted,
+     * because the types of the points are used to sort the incident lines. Lines that are already marked as
+     * deleted in the starter list (type 0) are treated as used.
+     * @param starterList List of all lines, each line consists of two points.
+     * @param SPandCNandTER List of all points with their types, without duplicates.
+     */
+    public LineIncidenceIndex(ArrayList<ArrayList<Point>> starterList, ArrayList<Point> SPandCNandTER) {
+        this.starterList = starterList;
+        this.SPandCNandTER = SPandCNandTER;
+
+        // the id of a point is its position in SPandCNandTER
+        pointIds = new PointKeyTable(SPandCNandTER.size());
+        points = new Point[SPandCNandTER.size()];
+        for (Point point : SPandCNandTER) {
+            int id = pointIds.idOf(point.key());
+            if (points[id] == null) {
+                points[id] = point;
+            }
+        }
+        pointCount = points.length;
+
+        lineCount = starterList.size();
+        lineStart = new int[lineCount];
+        lineEnd = new int[lineCount];
+        usedLines = new BitSet(lineCount);
+        for (int line = 0; line < lineCount; line++) {
+            ArrayList<Point> starterLine = starterList.get(line);
+            lineStart[line] = pointIds.indexOf(starterLine.get(0).key());
+            lineEnd[line] = pointIds.indexOf(starterLine.get(1).key());
+            if (lineStart[line] < 0 || lineEnd[line] < 0) {
+                throw new IllegalArgumentException("Line " + starterLine + " has a point that is missing in SPandCNandTER");
+            }
+            if (starterLine.get(0).getType() == 0 || starterLine.get(1).getType() == 0) {
+                usedLines.set(line);
+            }
+        }
+
+        int[] types = new int[pointCount];
+        for (int id = 0; id < pointCount; id++) {
+            types[id] = points[id].getType();
+        }
+        buildIncidence(types);
+    }
+
+    /**
+     * Builds the index for the lines of a SegmentStore, whose points must already have their types
+     * (see LineCrafter.getAllPointTypes(SegmentStore)). The lines and points keep the ids of the store.
+     * Without a starter list, no point types are changed when a line is taken.
+     * @param store lines and points with their types
+     */
+    public LineIncidenceIndex(SegmentStore store) {
+        this(store.lineStartColumn(), store.lineEndColumn(), store.lineCount(), store.typeColumn(), store.pointCount());
+    }
+
+    /**
+     * Builds the index for lines that are given by the ids of their two points, e.g. the lines of one
+     * connected component (see ConnectedComponents). The arrays are used directly and not copied.
+     * @param lineStart id of the first point of each line
+     * @param lineEnd id of the second point of each line
+     * @param lineCount number of lines, the first lineCount entries of the arrays are used
+     * @param types type of each point
+     * @param pointCount number of points, point ids range from 0 to pointCount-1
+     */
+    public LineIncidenceIndex(int[] lineStart, int[] lineEnd, int lineCount, int[] types, int pointCount) {
+        starterList = null;
+        SPandCNandTER = null;
+        pointIds = null;
+        points = null;
+        this.pointCount = pointCount;
+        this.lineCount = lineCount;
+        this.lineStart = lineStart;
+        this.lineEnd = lineEnd;
+        usedLines = new BitSet(lineCount);
+        buildIncidence(types);
+    }
+
+    /**
+     * Sorts the incident lines of every point into the order in which searchForPoint() picks them.
+     * @param types type of each point
+     */
+    private void buildIncidence(int[] types) {
+        int[] rank = new int[pointCount];
+        for (int id = 0; id < pointCount; id++) {
+            rank[id] = rankOf(types[id]);
+        }
+
+        // count the incident lines of each point, lines that lead to an unusable point are left out
+        incidenceOffsets = new int[pointCount + 1];
+        for (int line = 0; line < lineCount; line++) {
+            if (rank[lineEnd[line]] != RANK_UNUSABLE) {
+                incidenceOffsets[lineStart[line] + 1]++;
+            }
+            if (rank[lineStart[line]] != RANK_UNUSABLE) {
+                incidenceOffsets[lineEnd[line] + 1]++;
+            }
+        }
+        for (int id = 0; id < pointCount; id++) {
+            incidenceOffsets[id + 1] += incidenceOffsets[id];
+        }
+
+        // fill in the incident lines group by group, so that each point has its CN lines first, then SP, then TER
+        incidentLines = new int[incidenceOffsets[pointCount]];
+        int[] fill = new int[pointCount];
+        System.arraycopy(incidenceOffsets, 0, fill, 0, pointCount);
+        for (int group = RANK_CN; group <= RANK_TER; group++) {
+            for (int line = 0; line < lineCount; line++) {
+                if (rank[lineEnd[line]] == group) {
+                    incidentLines[fill[lineStart[line]]++] = line;
+                }
+                if (rank[lineStart[line]] == group) {
+                    incidentLines[fill[lineEnd[line]]++] = line;
+                }
+            }
+        }
+        cursor = fill;
+        System.arraycopy(incidenceOffsets, 0, cursor, 0, pointCount);
+    }
+
+    /**
+     * Checks whether the index belongs to the given lists
+     * @param starterList list of lines
+     * @param SPandCNandTER list of points
+     * @return true if the index has been built for exactly these lists, false otherwise
+     */
+    public boolean isBuiltFor(ArrayList<ArrayList<Point>> starterList, ArrayList<Point> SPandCNandTER) {
+        return this.starterList == starterList && this.SPandCNandTER == SPandCNandTER;
+    }
+
+    /**
+     * Looks up the id of a point by its x,y coordinates
+     * @param point point from SPandCNandTER or the starter list
+     * @return id of the point, or -1 if there is no point with these coordinates
+     */
+    public int idOf(Point point) {
+        return pointIds == null ? -1 : pointIds.indexOf(point.key());
+    }
+
+    /**
+     * Getter for a point of SPandCNandTER. Only available if the index was built from a starter list.
+     * @param id id of the point
+     * @return point with this id
+     */
+    public Point point(int id) {
+        return points[id];
+    }
+
+    /**
+     * Getter for the number of points
+     * @return number of distinct points
+     */
+    public int pointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Getter for the number of lines
+     * @return number of lines in the starter list
+     */
+    public int lineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the point at the other end of a line
+     * @param line id of the line
+     * @param pointId id of one point of the line
+     * @return id of the other point of the line
+     */
+    public int otherEnd(int line, int pointId) {
+        return lineStart[line] == pointId ? lineEnd[line] : lineStart[line];
+    }
+
+    /**
+     * Checks whether a line has already been used for a polyline
+     * @param line id of the line
+     * @return true if the line has been used, false otherwise
+     */
+    public boolean isUsed(int line) {
+        return usedLines.get(line);
+    }
+
+    /**
+     * Finds the next unused line of a point with the priority of searchForPoint() (CN > SP > TER)
+     * and marks it as used. Like in searchForPoint(), the points of the line in the starter list get type 0
+     * (if the index was built from a starter list).
+     * @param pointId id of the current point
+     * @return id of the line that has been taken, or -1 if all lines of the point have been used
+     */
+    public int takeNextLine(int pointId) {
+        int end = incidenceOffsets[pointId + 1];
+        int position = cursor[pointId];
+        while (position < end && usedLines.get(incidentLines[position])) {
+            position++;
+        }
+        cursor[pointId] = position;
+        if (position == end) {
+            return -1;
+        }
+
+        int line = incidentLines[position];
+        usedLines.set(line);
+        if (starterList != null) {
+            starterList.get(line).get(0).setType(0);
+            starterList.get(line).get(1).setType(0);
+        }
+        return line;
+    }
+
+    /**
+     * Maps a point type to the group in which searchForPoint() picks it.
+     * @param type type of a point (see Point class)
+     * @return group of the type, RANK_UNUSABLE for points that have already been used up.
+     */
+    static int rankOf(int type) {
+        if (type == 2 || type == 3) {
+            return RANK_CN;
+        } else if (type == 1) {
+            return RANK_SP;
+        } else if (type >= 4) {
+            return RANK_TER;
+        }
+        return RANK_UNUSABLE;
+    }
+}
@@ -1,6 +1,13 @@
 import javax.swing.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Creates a visualization of polylines that have been composed of lines from the input.txt data,
@@ -11,61 +18,514 @@ import java.util.Map;
 public class Main {
     public static void main(String[] args) {
 
+        List<String> arguments = Arrays.asList(args);
+
+        LineCrafter lineCrafter = new LineCrafter();
+
+        // With the argument --metrics FILE, the wall time and allocation of each phase and counters of the run
+        // are measured and written as JSON to the file at the end (see RunMetrics).
+        String metricsFile = stringArgument(arguments, "--metrics", null);
+        if (metricsFile != null) {
+            RunMetrics.enable();
+        }
+
+        // With the argument --input FILE, another input file than input.txt is read. Binary segment files
+        // (see SegmentFile) are read by --mapped and --store much faster than text files.
+        // With the argument --convert FILE, the input file is only converted to a binary segment file.
+        String inputFile = stringArgument(arguments, "--input", "src/main/java/input.txt");
+        String convertFile = stringArgument(arguments, "--convert", null);
+        if (convertFile != null) {
+            try {
+                int lineCount = SegmentFile.convert(inputFile, convertFile);
+                System.out.println("Converted " + lineCount + " lines to " + convertFile);
+            } catch (IOException IOexception) {
+                System.err.println("Could not convert " + inputFile + " to " + convertFile);
+                IOexception.printStackTrace();
+            }
+            return;
+        }
+
+        // With the argument --stream FILE, each polyline is written to the file as soon as it has been crafted,
+        // by a background thread (see PrintingPolylineSink). The polylines are neither kept, ranked nor plotted,
+        // so the memory does not grow with the number of polylines. "--stream -" writes to the console.
+        String streamTarget = stringArgument(arguments, "--stream", null);
+        if (streamTarget != null) {
+            streamPolylines(lineCrafter, inputFile, arguments, streamTarget);
+            writeMetrics(metricsFile);
+            return;
+        }
+
+        // With the argument --progressive, the window is opened at once and shows the polylines while they are
+        // crafted in the background, instead of waiting until all polylines have been crafted and ranked.
+        if (arguments.contains("--progressive") && stringArgument(arguments, "--export", null) == null) {
+            showProgressively(lineCrafter, inputFile, arguments, metricsFile);
+            return;
+        }
+
+        // With the argument --cache DIR, the ranked polylines are stored in a cache directory and reused when the
+        // same lines are crafted again with the same options (see ResultCache). With --cache-size MB, the size of
+        // the cache is limited (256 MB by default), the least recently used results are deleted first.
+        // The lines are read once for the key, and if the cache has no result for them, they are crafted from there.
+        ResultCache cache = openCache(arguments);
+        String cacheKey = null;
+        PolylineRanking cachedRanking = null;
+        SegmentCoordinates inputLines = null;
+        if (cache != null) {
+            inputLines = new InputHandler().readCoordinatesMapped(inputFile);
+            RunMetrics.Phase cachingPhase = RunMetrics.startPhase("caching");
+            try {
+                cacheKey = ResultCache.key(inputLines, cacheOptions(arguments));
+                cachedRanking = cache.get(cacheKey);
+            } finally {
+                cachingPhase.close();
+            }
+        }
+
+        PolylineRanking ranking;
+        if (cachedRanking != null) {
+            System.out.println("The polylines have been taken from the cache.\n");
+            ranking = cachedRanking;
+        } else {
+            ranking = craftAndRank(lineCrafter, inputFile, inputLines, arguments);
+            if (cache != null) {
+                RunMetrics.Phase cachingPhase = RunMetrics.startPhase("caching");
+                try {
+                    cache.put(cacheKey, ranking);
+                } catch (IOException IOexception) {
+                    System.err.println("Could not store the polylines in the cache");
+                    IOexception.printStackTrace();
+                } finally {
+                    cachingPhase.close();
+                }
+            }
+        }
+
+        // The results are then printed to the console.
+        printRanking(ranking);
+
+        // Finally, a visualization is created.
+        // With the argument --export FILE, the polylines are rendered to a PNG or SVG file instead of a window,
+        // which also works without a display.
+        // With the argument --lod, the polylines are decimated to what can be seen in the window.
+        String exportFile = stringArgument(arguments, "--export", null);
+        if (exportFile != null) {
+            RunMetrics.Phase plottingPhase = RunMetrics.startPhase("plotting");
+            try {
+                ChartExporter.exportChart(ranking.getLinienzuege(), exportFile);
+            } catch (IOException | IllegalArgumentException exception) {
+                System.err.println("Could not export the chart to " + exportFile + ": " + exception.getMessage());
+                exception.printStackTrace();
+            } finally {
+                plottingPhase.close();
+            }
+            writeMetrics(metricsFile);
+        } else {
+            boolean levelOfDetail = arguments.contains("--lod");
+            SwingUtilities.invokeLater(() -> {
+                RunMetrics.Phase plottingPhase = RunMetrics.startPhase("plotting");
+                try {
+                    PlotCreator.createChart(ranking.getLinienzuege(), levelOfDetail);
+                } finally {
+                    plottingPhase.close();
+                    writeMetrics(metricsFile);
+                }
+            });
+        }
+
+    } //Main Method
+
+    /**
+     * Prints the length and the points of each ranked polyline to the console
+     * @param ranking ranked polylines
+     */
+    private static void printRanking(PolylineRanking ranking) {
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            System.out.println("Distanz des Linienzuges " + (rank + 1) + " betraegt: " + String.format("%.3f", ranking.lengthAt(rank)) +" Einheiten");
+            System.out.println("x,y Koordinaten der Punkte im Linienzug " + ranking.linienzugAt(rank)+ "\n" );
+        }
+    }
+
+    /**
+     * Opens the window at once and crafts the polylines in a background thread (SwingWorker). Each polyline is
+     * published as soon as it is complete; the SwingWorker hands the published polylines in batches to the event
+     * dispatch thread, where they are appended to the chart (see ProgressiveChart). At the end, the polylines are
+     * ranked and printed like without --progressive. The window shows all crafted polylines, also with --top.
+     * @param lineCrafter LineCrafter to use
+     * @param inputFile filename of the input data
+     * @param arguments arguments of the program, see craftAndRank()
+     * @param metricsFile file for the metrics, or null
+     */
+    private static void showProgressively(LineCrafter lineCrafter, String inputFile, List<String> arguments, String metricsFile) {
+        SwingUtilities.invokeLater(() -> {
+            ProgressiveChart chart = PlotCreator.createProgressiveChart();
+            new SwingWorker<PolylineRanking, ArrayList<Point>>() {
+
+                @Override
+                protected PolylineRanking doInBackground() {
+                    PolylineRanking ranking = craftAndRank(lineCrafter, inputFile, null, arguments, this::publish);
+                    printRanking(ranking);
+                    return ranking;
+                }
+
+                @Override
+                protected void process(List<ArrayList<Point>> linienzuege) {
+                    chart.append(linienzuege);
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        get();
+                        chart.finish("Keine Linienzuege gefunden");
+                    } catch (InterruptedException | ExecutionException exception) {
+                        System.err.println("Could not craft the polylines");
+                        exception.printStackTrace();
+                        chart.finish("Die Linienzuege konnten nicht erstellt werden");
+                    } finally {
+                        writeMetrics(metricsFile);
+                    }
+                }
+            }.execute();
+        });
+    }
+
+    /**
+     * Reads the input file, crafts the polylines and ranks them by length.
+     * @param lineCrafter LineCrafter to use
+     * @param inputFile filename of the input data
+     * @param inputLines lines of the input file if they have already been read, or null to read the file
+     * @param arguments arguments of the program, --external, --store, --mapped, --recursive, --parallel and --top are considered
+     * @return ranked polylines
+     */
+    private static PolylineRanking craftAndRank(LineCrafter lineCrafter, String inputFile, SegmentCoordinates inputLines, List<String> arguments) {
+        return craftAndRank(lineCrafter, inputFile, inputLines, arguments, null);
+    }
+
+    /**
+     * Reads the input file, crafts the polylines and ranks them by length.
+     * @param lineCrafter LineCrafter to use
+     * @param inputFile filename of the input data
+     * @param inputLines lines of the input file if they have already been read, or null to read the file
+     * @param arguments arguments of the program, --external, --store, --mapped, --recursive, --parallel and --top are considered
+     * @param progress receives each polyline as soon as it has been crafted, before it is kept for the ranking, or null
+     * @return ranked polylines
+     */
+    private static PolylineRanking craftAndRank(LineCrafter lineCrafter, String inputFile, SegmentCoordinates inputLines, List<String> arguments, PolylineSink progress) {
+
+        // The result is a list of polylines, which is ranked by length.
+        // With the argument --store, the lines are kept in a compact SegmentStore instead of the starter list,
+        // which needs much less memory for large inputs.
+        // With the argument --parallel-input (together with --store), the input file is parsed in chunks on all cores.
+        // With the argument --parallel, the connected components of the lines are crafted in parallel.
+        // With the argument --top K, only the K longest polylines are kept while the polylines are crafted.
+        // With the argument --external DIR, the lines are sorted and crafted in files in DIR, for inputs that do not
+        // fit into the heap. Combine it with --stream or --top, so that the polylines do not have to fit either.
+        ArrayList<ArrayList<Point>> linienzuege = new ArrayList<>();
+        int topK = intArgument(arguments, "--top", 0);
+        TopKPolylines topPolylines = topK > 0 ? new TopKPolylines(topK) : null;
+        PolylineSink keeper = topPolylines != null ? topPolylines : linienzuege::add;
+        PolylineSink sink = progress == null ? keeper : linienzug -> {
+            progress.accept(linienzug);
+            keeper.accept(linienzug);
+        };
+
+        if (stringArgument(arguments, "--external", null) != null) {
+            craftExternally(inputFile, arguments, sink);
+        } else if (arguments.contains("--store")) {
+            craftWithSegmentStore(lineCrafter, inputFile, inputLines, arguments, sink);
+        } else {
+            craftWithStarterList(lineCrafter, inputFile, inputLines, arguments, sink);
+        }
+
+        // For each polyline, its length is then calculated and the polylines are ranked in descending order,
+        // so that the longest polyline gets the first rank. Polylines with the same length are all kept.
+        PolylineRanking ranking;
+        RunMetrics.Phase rankingPhase = RunMetrics.startPhase("ranking");
+        try {
+            if (topPolylines != null) {
+                ranking = topPolylines.toRanking();
+            } else {
+                ranking = lineCrafter.rankLinienzuege(linienzuege);
+            }
+        } finally {
+            rankingPhase.close();
+        }
+        return ranking;
+    }
+
+    /**
+     * Crafts the polylines and writes each one as soon as it is complete, without ranking them.
+     * @param lineCrafter LineCrafter to use
+     * @param inputFile filename of the input data
+     * @param arguments arguments of the program, --external, --store, --mapped, --recursive and --parallel are considered
+     * @param streamTarget file to write, or "-" for the console
+     */
+    private static void streamPolylines(LineCrafter lineCrafter, String inputFile, List<String> arguments, String streamTarget) {
+        long written = 0;
+        try (PrintingPolylineSink sink = streamTarget.equals("-") ? PrintingPolylineSink.toConsole()
+                : PrintingPolylineSink.toFile(Paths.get(streamTarget))) {
+            if (stringArgument(arguments, "--external", null) != null) {
+                craftExternally(inputFile, arguments, sink);
+            } else if (arguments.contains("--store")) {
+                craftWithSegmentStore(lineCrafter, inputFile, null, arguments, sink);
+            } else {
+                craftWithStarterList(lineCrafter, inputFile, null, arguments, sink);
+            }
+            written = sink.getReceived();
+        } catch (IOException | UncheckedIOException exception) {
+            System.err.println("Could not write the polylines to " + streamTarget);
+            exception.printStackTrace();
+            return;
+        }
+        System.out.println(written + " polylines have been written to " + (streamTarget.equals("-") ? "the console" : streamTarget));
+    }
+
+    /**
+     * Opens the result cache, if it has been enabled with --cache DIR.
+     * The key of the cache is built from all lines in the heap, so the cache is not used with --external.
+     * @param arguments arguments of the program, --cache, --cache-size and --external are considered
+     * @return the cache, or null if it is disabled or cannot be opened
+     */
+    private static ResultCache openCache(List<String> arguments) {
+        String cacheDirectory = stringArgument(arguments, "--cache", null);
+        if (cacheDirectory == null) {
+            return null;
+        }
+        if (stringArgument(arguments, "--external", null) != null) {
+            System.err.println("--cache needs all lines in the heap and is ignored with --external");
+            return null;
+        }
+        try {
+            return new ResultCache(Paths.get(cacheDirectory), intArgument(arguments, "--cache-size", 256) * 1024L * 1024L);
+        } catch (IOException IOexception) {
+            System.err.println("Could not open the cache " + cacheDirectory + ", the polylines are crafted without cache");
+            IOexception.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Describes the options that change the crafted polylines, for the key of the result cache.
+     * The variants of the algorithm give the same polylines, but possibly in another order or direction.
+     * @param arguments arguments of the program
+     * @return options, e.g. "store top=10 snap=0"
+     */
+    private static String cacheOptions(List<String> arguments) {
+        StringBuilder options = new StringBuilder();
+        for (String option : new String[] {"--store", "--recursive", "--parallel"}) {
+            if (arguments.contains(option)) {
+                options.append(option.substring(2)).append(' ');
+            }
+        }
+        return options.append("top=").append(intArgument(arguments, "--top", 0))
+                .append(" snap=").append(intArgument(arguments, "--snap", 0)).toString();
+    }
+
+    /**
+     * Writes the summary of the metrics, if they have been enabled with --metrics FILE
+     * @param metricsFile file for the summary, null if metrics are disabled
+     */
+    private static void writeMetrics(String metricsFile) {
+        if (metricsFile == null) {
+            return;
+        }
+        try {
+            RunMetrics.writeSummary(Paths.get(metricsFile));
+        } catch (IOException IOexception) {
+            System.err.println("Could not write the metrics to " + metricsFile);
+            IOexception.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads the value of a numeric argument, e.g. 10 for the arguments "--top 10".
+     * @param arguments arguments of the program
+     * @param name name of the argument
+     * @param defaultValue value if the argument is missing or not a number
+     * @return value of the argument
+     */
+    private static int intArgument(List<String> arguments, String name, int defaultValue) {
+        int position = arguments.indexOf(name);
+        if (position < 0 || position + 1 >= arguments.size()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(arguments.get(position + 1));
+        } catch (NumberFormatException NFexception) {
+            System.err.println("Argument " + name + " needs a number, but got " + arguments.get(position + 1));
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads the value of an argument, e.g. result.png for the arguments "--export result.png".
+     * @param arguments arguments of the program
+     * @param name name of the argument
+     * @param defaultValue value if the argument is missing
+     * @return value of the argument
+     */
+    private static String stringArgument(List<String> arguments, String name, String defaultValue) {
+        int position = arguments.indexOf(name);
+        if (position < 0 || position + 1 >= arguments.size()) {
+            return defaultValue;
+        }
+        return arguments.get(position + 1);
+    }
+
+    /**
+     * Snaps close endpoints of the lines (see EndpointSnapper) and reports the dropped lines,
+     * unless the polylines are streamed to the console.
+     * @param lines lines of the input data
+     * @param snapTolerance maximal distance of two endpoints that are snapped together, 0 for no snapping
+     * @param arguments arguments of the program, --stream is considered
+     * @return lines with the snapped endpoints
+     */
+    private static SegmentCoordinates snapEndpoints(SegmentCoordinates lines, int snapTolerance, List<String> arguments) {
+        SegmentCoordinates snapped = EndpointSnapper.snap(lines, snapTolerance);
+        if (snapTolerance > 0 && !"-".equals(stringArgument(arguments, "--stream", null))) {
+            System.out.println("The endpoints have been snapped with tolerance " + snapTolerance + ", "
+                    + (lines.size() - snapped.size()) + " lines have become too short and have been dropped.");
+        }
+        return snapped;
+    }
+
+    /**
+     * Reads the input.txt file and crafts the polylines with the starter list of LineCrafter.
+     * @param lineCrafter LineCrafter to use
+     * @param inputFile filename of the input data
+     * @param inputLines lines of the input file if they have already been read, or null to read the file
+     * @param arguments arguments of the program, --mapped, --snap, --recursive and --parallel are considered
+     * @param sink receives the polylines
+     */
+    private static void craftWithStarterList(LineCrafter lineCrafter, String inputFile, SegmentCoordinates inputLines, List<String> arguments, PolylineSink sink) {
+
         // Reading the input.txt file and storing the data
+        // With the argument --mapped, the file is mapped into memory and parsed directly into int arrays,
+        // which is much faster for large files.
+        // With the argument --snap T, endpoints within a distance of T are snapped to one point before the types
+        // are assigned (see EndpointSnapper). The file is then always read with --mapped.
+        // Lines that have already been read (for the result cache) are not read again.
         InputHandler inputHandler = new InputHandler();
-        ArrayList<ArrayList<Integer>> rawCoordinates = inputHandler.readCoordinates("src/main/java/input.txt");
+        ArrayList<ArrayList<Point>> starterListNotypes;
+        int snapTolerance = intArgument(arguments, "--snap", 0);
 
-        // Print the result for verification
         System.out.println("\nDie initialen Koordinatendaten lauten: ");
-        for (ArrayList<Integer> coordinates : rawCoordinates) {
-            System.out.println(coordinates);
-        }
-        System.out.println("\n");
+        if (inputLines != null || arguments.contains("--mapped") || snapTolerance > 0) {
+            SegmentCoordinates coordinates = snapEndpoints(inputLines != null ? inputLines : inputHandler.readCoordinatesMapped(inputFile), snapTolerance, arguments);
 
-        LineCrafter lineCrafter = new LineCrafter();
+            // Print the result for verification
+            for (int line = 0; line < coordinates.size(); line++) {
+                System.out.println(coordinates.lineToString(line));
+            }
 
-        // Convert the list of integers to a list of lines described by points.
-        // The types of the points will be assigned later.
-        ArrayList<ArrayList<Point>> starterListNotypes = lineCrafter.createStarterList(rawCoordinates);
+            // Convert the coordinates to a list of lines described by points.
+            // The types of the points will be assigned later.
+            starterListNotypes = lineCrafter.createStarterList(coordinates);
+        } else {
+            ArrayList<ArrayList<Integer>> rawCoordinates = inputHandler.readCoordinates(inputFile);
+
+            // Print the result for verification
+            for (ArrayList<Integer> coordinates : rawCoordinates) {
+                System.out.println(coordinates);
+            }
+
+            // Convert the list of integers to a list of lines described by points.
+            // The types of the points will be assigned later.
+            starterListNotypes = lineCrafter.createStarterList(rawCoordinates);
+        }
+        System.out.println("\n");
 
         // Count the frequency of each point and assign it the corresponding type.
         // Work on a deep copy to leave the previous lists unchanged (used for checking intermediate results).
-        ArrayList<ArrayList<Point>> starterListAllTypes = lineCrafter.getAllPointTypes(LineCrafter.deepCopy(starterListNotypes));
+        // The counting variant gives the same types as getAllPointTypes(), but in linear instead of quadratic time.
+        ArrayList<ArrayList<Point>> starterListAllTypes = lineCrafter.getAllPointTypesCounting(LineCrafter.deepCopy(starterListNotypes));
 
         // Create a list of all points with their correct types present in the starter list.
         ArrayList<Point> SPandCNandTER = lineCrafter.getAllPointsAndSetStartlistTypes(starterListAllTypes);
 
-        // List for temporary storage of a polyline that is currently being constructed and should be further expanded.
-        ArrayList<Point> linienzugInitial = new ArrayList<>();
-
-        // List for storing multiple completed polylines.
-        ArrayList<ArrayList<Point>> linienzuegeInitial = new ArrayList<>();
+        // Index the lines that begin or end in each point, so that the search for the next point
+        // does not have to scan all lines and points in every step.
+        lineCrafter.buildIncidenceIndex(starterListAllTypes, SPandCNandTER);
 
 
         //********** Main Function **********
-        // Implements a recursive algorithm that solves the problem of forming polylines.
+        // Implements an algorithm that solves the problem of forming polylines.
         // This time with the ruleset of OPTION 2 (see documentation) including Terminators in the polylines.
+        // By default the iterative implementation is used, which does not run into a StackOverflowError for large inputs.
+        // The recursive implementation can be selected with the argument --recursive, e.g. to compare the results.
+        // The iterative and the recursive implementation hand each polyline to the sink as soon as it is complete,
+        // the parallel implementation hands over its polylines at the end.
+        if (arguments.contains("--recursive")) {
+            lineCrafter.CraftConnectedLines(starterListAllTypes, SPandCNandTER, sink);
+        } else if (arguments.contains("--parallel")) {
+            lineCrafter.CraftConnectedLinesParallel(starterListAllTypes, SPandCNandTER, ForkJoinPool.commonPool()).forEach(sink::accept);
+        } else {
+            lineCrafter.CraftConnectedLinesIterative(starterListAllTypes, SPandCNandTER, sink);
+        }
+    }
 
-        // The result is a list of polylines.
-        ArrayList<ArrayList<Point>> linienzuege = lineCrafter.CraftConnectedLines(starterListAllTypes, SPandCNandTER,linienzugInitial,linienzuegeInitial);
-
-        // For each polyline, its length is then calculated and stored together with the polyline in a map.
-        // This map is then sorted in descending order, so that the longest polyline becomes the first entry.
-        Map<Double, ArrayList<Point>> distances = lineCrafter.sortLinienzuege(linienzuege);
+    /**
+     * Reads the input.txt file into a SegmentStore and crafts the polylines directly on the store.
+     * Only the finished polylines are converted to Point objects, for printing and plotting.
+     * @param lineCrafter LineCrafter to use
+     * @param inputFile filename of the input data
+     * @param inputLines lines of the input file if they have already been read, or null to read the file
+     * @param arguments arguments of the program, --parallel-input, --snap and --parallel are considered
+     * @param sink receives the polylines
+     */
+    private static void craftWithSegmentStore(LineCrafter lineCrafter, String inputFile, SegmentCoordinates inputLines, List<String> arguments, PolylineSink sink) {
 
-        // The results are then printed to the console.
-        int counter  = 1;
-        for (Map.Entry<Double,ArrayList<Point>> entry: distances.entrySet()
-             ) {
+        SegmentStore store;
+        int snapTolerance = intArgument(arguments, "--snap", 0);
+        if (arguments.contains("--parallel-input") && snapTolerance == 0 && inputLines == null) {
+            // Parsing the input.txt file in chunks on all cores, the frequency of each point is counted
+            // while parsing, so the points have their types as soon as the file has been read.
+            store = ParallelIngestion.read(inputFile, ForkJoinPool.commonPool());
+        } else {
+            if (arguments.contains("--parallel-input") && snapTolerance > 0) {
+                System.err.println("--snap needs all lines before the points are counted and is not combined with --parallel-input");
+            }
+            // Reading the input.txt file directly into int arrays, snapping close endpoints (--snap T)
+            // and storing the lines with point ids. Lines that have already been read (for the result cache)
+            // are not read again.
+            SegmentCoordinates lines = inputLines != null ? inputLines : new InputHandler().readCoordinatesMapped(inputFile);
+            SegmentCoordinates coordinates = snapEndpoints(lines, snapTolerance, arguments);
+            store = SegmentStore.fromCoordinates(coordinates);
 
-            System.out.println("Distanz des Linienzuges " + counter + " betraegt: " + String.format("%.3f", entry.getKey()) +" Einheiten");
-            System.out.println("x,y Koordinaten der Punkte im Linienzug " + entry.getValue()+ "\n" );
-            counter++;
+            // Count the frequency of each point and assign it the corresponding type.
+            lineCrafter.getAllPointTypes(store);
         }
 
-        // Finally, a visualization is created.
-        SwingUtilities.invokeLater(() -> PlotCreator.createChart(linienzuege));
+        //********** Main Function **********
+        // Same iterative algorithm as for the starter list (OPTION 2), but on point ids
+        if (arguments.contains("--parallel")) {
+            lineCrafter.CraftConnectedLinesParallel(store, ForkJoinPool.commonPool()).toLinienzuege(store).forEach(sink::accept);
+        } else {
+            lineCrafter.CraftConnectedLines(store, sink);
+        }
+    }
 
-    } //Main Method
+    /**
+     * Crafts the polylines in external memory (see ExternalPolylineCrafter), for inputs that do not fit into the heap.
+     * The lines are sorted in files in the directory given with --external DIR, and the heap used for the sorting
+     * is limited with --memory MB (64 MB by default). The polylines are the same as with --store.
+     * @param inputFile filename of the input data, a text file
+     * @param arguments arguments of the program, --external, --memory and --snap are considered
+     * @param sink receives the polylines
+     */
+    private static void craftExternally(String inputFile, List<String> arguments, PolylineSink sink) {
+        if (intArgument(arguments, "--snap", 0) > 0) {
+            System.err.println("--snap needs all lines in the heap and is ignored with --external");
+        }
+        Path workDirectory = Paths.get(stringArgument(arguments, "--external", null));
+        try {
+            long polylines = new ExternalPolylineCrafter(workDirectory, intArgument(arguments, "--memory", 64) * 1024L * 1024L)
+                    .craft(inputFile, sink);
+            System.out.println(polylines + " polylines have been crafted in external memory.");
+        } catch (IOException IOexception) {
+            System.err.println("Could not craft the polylines in external memory ! " + inputFile);
+            IOexception.printStackTrace();
+        }
+    }
 
 } //Class
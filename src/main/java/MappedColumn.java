@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Column of int or long values in a file that is mapped into memory, for ExternalPolylineCrafter.
+ * The values are not held in the heap, the operating system loads and writes back the pages of the file as needed.
+ * Like that, the columns of an input with billions of lines can be used like arrays.
+ * A mapping is limited to 2 GB, so the file is mapped in segments of 1 GB. The size of a value divides the
+ * size of a segment, so that no value crosses the border between two segments.
+ */
+public class MappedColumn implements AutoCloseable {
+
+    // size of a segment as power of 2
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    // number of values
+    private final long length;
+
+    /**
+     * Creates a new column file, all values are 0
+     * @param file file for the column, an existing file is replaced
+     * @param length number of values
+     * @param valueBytes size of a value, Integer.BYTES or Long.BYTES
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public MappedColumn(Path file, long length, int valueBytes) throws IOException {
+        this.length = length;
+        long fileSize = length * valueBytes;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            segments = new MappedByteBuffer[(int) ((fileSize + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int segment = 0; segment < segments.length; segment++) {
+                long position = (long) segment << SEGMENT_SHIFT;
+                segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(SEGMENT_MASK + 1, fileSize - position));
+            }
+        } catch (IOException IOexception) {
+            channel.close();
+            throw IOexception;
+        }
+    }
+
+    /**
+     * Getter for the number of values
+     * @return number of values in the column
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Getter for a value of an int column
+     * @param index index of the value
+     * @return the value
+     */
+    public int getInt(long index) {
+        long position = index << 2;
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & SEGMENT_MASK));
+    }
+
+    /**
+     * Setter for a value of an int column
+     * @param index index of the value
+     * @param value new value
+     */
+    public void putInt(long index, int value) {
+        long position = index << 2;
+        segments[(int) (position >>> SEGMENT_SHIFT)].putInt((int) (position & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Getter for a value of a long column
+     * @param index index of the value
+     * @return the value
+     */
+    public long getLong(long index) {
+        long position = index << 3;
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    /**
+     * Setter for a value of a long column
+     * @param index index of the value
+     * @param value new value
+     */
+    public void putLong(long index, long value) {
+        long position = index << 3;
+        segments[(int) (position >>> SEGMENT_SHIFT)].putLong((int) (position & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Closes the file. The mapped segments stay valid until they are garbage collected, but must not be used anymore.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
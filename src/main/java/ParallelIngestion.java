@@ -0,0 +1,285 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Reads a text input file into a SegmentStore on all cores, and counts the connectivity of the points while parsing,
+ * so that the point types are assigned as soon as the file has been read. The result is the same as of
+ * InputHandler.readCoordinatesMapped(), SegmentStore.fromCoordinates() and LineCrafter.getAllPointTypes(SegmentStore)
+ * one after another, which are all single threaded.
+ * The file is mapped like in readCoordinatesMapped() and split into chunks that end at a line break.
+ * Each chunk is parsed with InputHandler.parseLines() by a task of a ForkJoinPool, which enters the two points of
+ * each line into its own PointKeyTable. The table of a chunk hands out local ids and counts how often each point
+ * occurs in the chunk, without any locking.
+ * The tables are then merged in the order of the chunks: every local point gets its global id and its count is
+ * added to the global count. As the local ids are in the order of the first occurrence in the chunk, the global ids
+ * are in the order of the first occurrence in the whole file, as in SegmentStore.
+ * Finally, the local ids of the lines are replaced by the global ids, again in parallel.
+ */
+public class ParallelIngestion {
+
+    // maximal number of bytes of the input file that are mapped into memory at once, as in InputHandler
+    private static final int MAPPING_WINDOW = 1 << 30;
+    // smallest chunk, smaller chunks do not pay off the merging of their tables
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    // chunks per thread of the pool, so that threads with fast chunks can take over more of them
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelIngestion() {
+    }
+
+    /**
+     * Reads the lines of a text input file into a store and assigns the point types.
+     * Malformed lines are reported like in InputHandler.readCoordinatesMapped().
+     * Binary segment files (see SegmentFile) are read and typed one after another, as they are decoded in parallel
+     * anyway.
+     * @param filename filename of the input data
+     * @param pool pool that parses the chunks
+     * @return store with all lines that could be read, the points have their types
+     */
+    public static SegmentStore read(String filename, ForkJoinPool pool) {
+        ArrayList<Chunk> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (SegmentFile.isSegmentFile(channel)) {
+                return new LineCrafter().getAllPointTypes(SegmentStore.fromCoordinates(new InputHandler().readCoordinatesMapped(filename)));
+            }
+
+            RunMetrics.Phase parsingPhase = RunMetrics.startPhase("parsing");
+            try {
+                splitIntoChunks(channel, pool.getParallelism(), chunks);
+                pool.invoke(new ChunkTask(chunks.size(), chunk -> chunks.get(chunk).parse()));
+
+                // report the malformed lines with their line numbers in the whole file
+                long lineNumber = 1;
+                int lineCount = 0;
+                List<String> malformedLines = new ArrayList<>();
+                for (Chunk chunk : chunks) {
+                    malformedLines.addAll(chunk.malformedLines(lineNumber));
+                    lineNumber += chunk.inputLines;
+                    lineCount += chunk.lineCount;
+                }
+                RunMetrics.add(RunMetrics.Counter.LINES, lineCount);
+                RunMetrics.add(RunMetrics.Counter.MALFORMED_LINES, malformedLines.size());
+                for (String malformedLine : malformedLines) {
+                    System.err.println("Malformed input in " + filename + ", " + malformedLine);
+                }
+                System.out.println("Extraction of coordinates from file has been successful.");
+            } finally {
+                parsingPhase.close();
+            }
+
+        } catch (NoSuchFileException NsFexception){
+            System.err.println("No file found ! " + filename);
+            NsFexception.printStackTrace();
+            return new SegmentStore(0);
+        } catch (IOException IOexception){
+            System.err.println("File could not be read ! " + filename);
+            IOexception.printStackTrace();
+            return new SegmentStore(0);
+        }
+
+        RunMetrics.Phase typingPhase = RunMetrics.startPhase("typing");
+        try {
+            return merge(chunks, pool);
+        } finally {
+            typingPhase.close();
+        }
+    }
+
+    /**
+     * Maps the file in windows and splits each window into chunks that end at a line break
+     * @param channel opened input file
+     * @param threads number of threads that parse the chunks
+     * @param chunks receives the chunks in the order of the file
+     * @throws IOException if the file cannot be mapped or a line is longer than a window
+     */
+    private static void splitIntoChunks(FileChannel channel, int threads, ArrayList<Chunk> chunks) throws IOException {
+        long fileSize = channel.size();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, fileSize / (Math.max(1, threads) * (long) CHUNKS_PER_THREAD));
+        long position = 0;
+        while (position < fileSize) {
+            int length = (int) Math.min(MAPPING_WINDOW, fileSize - position);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            // unless this is the last window, only use the window up to the last line break in it
+            int limit = length;
+            if (position + length < fileSize) {
+                while (limit > 0 && buffer.get(limit - 1) != '\n') {
+                    limit--;
+                }
+                if (limit == 0) {
+                    throw new IOException("A line is longer than " + MAPPING_WINDOW + " bytes");
+                }
+            }
+
+            int start = 0;
+            while (start < limit) {
+                int end = (int) Math.min(limit, start + chunkSize);
+                while (end < limit && buffer.get(end - 1) != '\n') {
+                    end++;
+                }
+                chunks.add(new Chunk(buffer, start, end));
+                start = end;
+            }
+            position += limit;
+        }
+    }
+
+    /**
+     * Merges the point tables of the chunks into the store and assigns the point types
+     * @param chunks parsed chunks in the order of the file
+     * @param pool pool that replaces the local ids of the lines
+     * @return store with all lines and points
+     */
+    private static SegmentStore merge(ArrayList<Chunk> chunks, ForkJoinPool pool) {
+        int lineCount = 0;
+        for (Chunk chunk : chunks) {
+            lineCount += chunk.lineCount;
+        }
+        PointKeyTable points = new PointKeyTable(lineCount);
+
+        // global id for each local id, in the order of the chunks to keep the order of the first occurrences
+        int[] lineOffsets = new int[chunks.size()];
+        for (int index = 0, offset = 0; index < chunks.size(); index++) {
+            Chunk chunk = chunks.get(index);
+            lineOffsets[index] = offset;
+            offset += chunk.lineCount;
+            chunk.globalIds = new int[chunk.points.size()];
+            for (int localId = 0; localId < chunk.points.size(); localId++) {
+                int id = points.idOf(chunk.points.key(localId));
+                points.setCount(id, points.count(id) + chunk.points.count(localId));
+                chunk.globalIds[localId] = id;
+            }
+            chunk.points = null;
+        }
+
+        int[] lineStart = new int[Math.max(16, lineCount)];
+        int[] lineEnd = new int[lineStart.length];
+        pool.invoke(new ChunkTask(chunks.size(), index -> chunks.get(index).copyLines(lineStart, lineEnd, lineOffsets[index])));
+
+        // the connectivity of each point is its count in the merged table
+        int[] types = new int[Math.max(16, points.size())];
+        for (int id = 0; id < points.size(); id++) {
+            types[id] = LineCrafter.typeForConnectivity(points.count(id));
+        }
+        RunMetrics.countPointTypes(types, points.size());
+        return new SegmentStore(points, types, lineStart, lineEnd, lineCount);
+    }
+
+    /**
+     * Range of bytes of the input file that ends at a line break, with the lines and points parsed from it
+     */
+    private static class Chunk {
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+        // points of the chunk with local ids and their number of occurrences in the chunk
+        private PointKeyTable points;
+        // local ids of the two points of each line
+        private int[] localStart;
+        private int[] localEnd;
+        // number of valid lines
+        private int lineCount;
+        // number of lines of the input data in the chunk, including empty and malformed lines
+        private long inputLines;
+        // true if the chunk contains malformed lines
+        private boolean hasMalformedLines;
+        // global id for each local id, set by the merge
+        private int[] globalIds;
+
+        Chunk(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Parses the lines of the chunk and enters their points into the table of the chunk
+         */
+        void parse() {
+            SegmentCoordinates coordinates = new SegmentCoordinates((end - start) / 16);
+            inputLines = InputHandler.parseLines(buffer, start, end, 1, coordinates) - 1;
+            hasMalformedLines = !coordinates.getMalformedLines().isEmpty();
+            lineCount = coordinates.size();
+            points = new PointKeyTable(lineCount);
+            localStart = new int[lineCount];
+            localEnd = new int[lineCount];
+            for (int line = 0; line < lineCount; line++) {
+                localStart[line] = points.add(Point.packKey(coordinates.getX1(line), coordinates.getY1(line)));
+                localEnd[line] = points.add(Point.packKey(coordinates.getX2(line), coordinates.getY2(line)));
+            }
+        }
+
+        /**
+         * Describes the malformed lines of the chunk. They are rare, so the chunk is parsed again for this,
+         * now that the line number of its first line is known.
+         * @param firstLineNumber line number of the first line of the chunk in the whole file
+         * @return descriptions of the malformed lines, as in SegmentCoordinates.getMalformedLines()
+         */
+        List<String> malformedLines(long firstLineNumber) {
+            if (!hasMalformedLines) {
+                return new ArrayList<>();
+            }
+            SegmentCoordinates coordinates = new SegmentCoordinates(0);
+            InputHandler.parseLines(buffer, start, end, firstLineNumber, coordinates);
+            return coordinates.getMalformedLines();
+        }
+
+        /**
+         * Copies the lines of the chunk with their global point ids into the columns of the store
+         * @param lineStart column with the first point of each line
+         * @param lineEnd column with the second point of each line
+         * @param offset index of the first line of the chunk
+         */
+        void copyLines(int[] lineStart, int[] lineEnd, int offset) {
+            for (int line = 0; line < lineCount; line++) {
+                lineStart[offset + line] = globalIds[localStart[line]];
+                lineEnd[offset + line] = globalIds[localEnd[line]];
+            }
+            localStart = null;
+            localEnd = null;
+            globalIds = null;
+        }
+    }
+
+    /**
+     * Task that runs some work for a range of chunks, large ranges are split in halves and run in parallel.
+     */
+    private static class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IntConsumer work;
+        private final int from;
+        private final int to;
+
+        ChunkTask(int chunkCount, IntConsumer work) {
+            this(work, 0, chunkCount);
+        }
+
+        private ChunkTask(IntConsumer work, int from, int to) {
+            this.work = work;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(work, from, middle), new ChunkTask(work, middle, to));
+            } else if (from < to) {
+                work.accept(from);
+            }
+        }
+    }
+}
@@ -49,13 +49,49 @@ public class PlotCreator {
             chart.addSeries("Linienzug " + (i+1), x, y);
         }
 
+        showInFrame(new XChartPanel<>(chart));
+
+    }
+
+    /**
+     * Displays the polylines like createChart(linienzuege), but optionally with level of detail:
+     * only as many points as can be seen in the window are handed to XChart, and the visible part is shown
+     * at full detail again when the user zooms in (see LevelOfDetailChart).
+     * This keeps the window responsive for polylines with very many points.
+     * @param linienzuege 2d Array of line compositions (returned by LineCrafter Class)
+     * @param levelOfDetail true to decimate the polylines for the window, false to show all points
+     */
+    public static void createChart(ArrayList<ArrayList<Point>> linienzuege, boolean levelOfDetail){
+        if (levelOfDetail) {
+            showInFrame(new LevelOfDetailChart(linienzuege).getPanel());
+        } else {
+            createChart(linienzuege);
+        }
+    }
+
+    /**
+     * Opens a window for polylines that are still being crafted. The polylines are appended to the returned chart
+     * in batches as soon as they are complete, and the window is repainted at a limited rate (see ProgressiveChart).
+     * Has to be called on the event dispatch thread.
+     * @return the chart to which the polylines are appended
+     */
+    public static ProgressiveChart createProgressiveChart(){
+        ProgressiveChart chart = new ProgressiveChart();
+        showInFrame(chart.getContainer());
+        return chart;
+    }
+
+    /**
+     * Opens a window with a chart panel
+     * @param chartPanel panel that shows the chart
+     */
+    private static void showInFrame(JComponent chartPanel){
         JFrame frame = new JFrame("Linienzuege");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setLayout(new BorderLayout());
-        frame.add(new XChartPanel<>(chart), BorderLayout.CENTER);
+        frame.add(chartPanel, BorderLayout.CENTER);
         frame.pack();
         frame.setVisible(true);
-
     }
 }
 
@@ -86,6 +86,56 @@ public class Point {
     }
 
 
+    /**
+     * Hash code that is consistent with equals(), as both only depend on the x,y coordinates.
+     * Note: because equals() returns false for the same reference, points are still no reliable keys
+     * for hash based collections. Use key() for hash lookups instead.
+     * @return hash code of the coordinates
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(key());
+    }
+
+    /**
+     * Packs the x,y coordinates of this point into one long value (see packKey()).
+     * Two points have the same key exactly when they have the same coordinates, independent of their
+     * type and of their reference in memory. Therefore the key can be used for lookups in hash tables.
+     * @return x,y coordinates packed into one long
+     */
+    public long key() {
+        return packKey(x, y);
+    }
+
+    /**
+     * Packs a pair of x,y coordinates into one long value.
+     * The x coordinate occupies the upper 32 bits, the y coordinate the lower 32 bits.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return x,y coordinates packed into one long
+     */
+    public static long packKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Extracts the x coordinate from a key created by packKey()
+     * @param key packed x,y coordinates
+     * @return x coordinate
+     */
+    public static int keyX(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Extracts the y coordinate from a key created by packKey()
+     * @param key packed x,y coordinates
+     * @return y coordinate
+     */
+    public static int keyY(long key) {
+        return (int) key;
+    }
+
     /**
      * Characterizes the point
      * @return representation of the point as a String
@@ -0,0 +1,189 @@
+import java.util.ArrayList;
+
+/**
+ * Availability of the points of SPandCNandTER for the recursive LineCrafter.CraftConnectedLines().
+ * Without it, every step of the recursion scans the whole list of points three times: updateType() searches the
+ * point by equals(), allPointsAreUsed() and isCricle() check the types of all points.
+ * Here, each point gets an id by its x,y coordinates (see PointKeyTable), so that the point of a usage is found in
+ * O(1), and two counters are kept up to date with every usage:
+ * - the number of points that can still be used (type != 0), so all points are used when it is 0
+ * - the number of points that can still be used and are no CN (SP, TER), so only circles are left when it is 0
+ * The start point of the next polyline is taken from three buckets with the positions of the TER, SP and CN points
+ * in SPandCNandTER, in the order of the list. Each bucket has a head that skips the points that have been used up.
+ * As a point never changes its group while it is used (see LineCrafter.typeAfterUse()), the heads only move forward,
+ * and the next start point is found in amortized O(1) instead of up to three scans over all points.
+ * The counters and buckets are only correct as long as the types of the points are changed through use() alone.
+ */
+public class PointAvailability {
+
+    // list the availability was built for
+    private final ArrayList<Point> SPandCNandTER;
+    // id for the x,y coordinates of each point
+    private final PointKeyTable pointIds;
+    // position in SPandCNandTER of the first point of each id
+    private final int[] firstPosition;
+    // position of the next point with the same id, -1 for the last one. SPandCNandTER is normally free of
+    // duplicates, but updateType() changes all points with the same x,y coordinates.
+    private final int[] nextPosition;
+    // positions of the points of each start group (TER, SP, CN) in the order of SPandCNandTER
+    private int[][] buckets;
+    // position in each bucket before which all points have left the group
+    private int[] bucketHeads;
+    // true if a point has moved into another group, then the buckets are sorted again before their next use
+    private boolean bucketsOutdated;
+    // points with type != 0
+    private int unusedPoints;
+    // points with type != 0 that are no CN (type 2 or 3)
+    private int nonConnectorPoints;
+
+    /**
+     * Builds the availability for a list of points with their current types
+     * @param SPandCNandTER list of points, as created by LineCrafter.getAllPointsAndSetStartlistTypes()
+     */
+    public PointAvailability(ArrayList<Point> SPandCNandTER) {
+        this.SPandCNandTER = SPandCNandTER;
+        int size = SPandCNandTER.size();
+        pointIds = new PointKeyTable(size);
+        firstPosition = new int[size];
+        nextPosition = new int[size];
+        // the last point of each id, to append the next one with the same id
+        int[] lastPosition = new int[size];
+        for (int position = 0; position < size; position++) {
+            Point point = SPandCNandTER.get(position);
+            int before = pointIds.size();
+            int id = pointIds.idOf(point.key());
+            if (id == before) {
+                firstPosition[id] = position;
+            } else {
+                nextPosition[lastPosition[id]] = position;
+            }
+            lastPosition[id] = position;
+            nextPosition[position] = -1;
+            count(point.getType(), 1);
+        }
+        fillBuckets();
+    }
+
+    /**
+     * Checks whether the availability belongs to the given list
+     * @param SPandCNandTER list of points
+     * @return true if the availability has been built for exactly this list, false otherwise
+     */
+    public boolean isBuiltFor(ArrayList<Point> SPandCNandTER) {
+        return this.SPandCNandTER == SPandCNandTER;
+    }
+
+    /**
+     * Records a usage of a point like LineCrafter.updateType(): each point with the same x,y coordinates in
+     * SPandCNandTER gets the type that follows the type of the given point (see LineCrafter.typeAfterUse()).
+     * @param usedPoint point that has been used, from SPandCNandTER or a copy of it
+     */
+    public void use(Point usedPoint) {
+        int id = pointIds.indexOf(usedPoint.key());
+        if (id < 0) {
+            return;
+        }
+        int newType = LineCrafter.typeAfterUse(usedPoint.getType());
+        for (int position = firstPosition[id]; position >= 0; position = nextPosition[position]) {
+            Point point = SPandCNandTER.get(position);
+            count(point.getType(), -1);
+            count(newType, 1);
+            if (startGroup(newType) >= 0 && startGroup(newType) != startGroup(point.getType())) {
+                bucketsOutdated = true;
+            }
+            point.setType(newType);
+        }
+    }
+
+    /**
+     * Finds the start point of the next polyline like LineCrafter.getCurrentPoint(): the first TER in the order of
+     * SPandCNandTER, then the first SP, then the first CN that can still be used.
+     * @return the start point, or null if no point can be used anymore
+     */
+    public Point nextStartPoint() {
+        if (bucketsOutdated) {
+            fillBuckets();
+        }
+        for (int group = 0; group < buckets.length; group++) {
+            int[] bucket = buckets[group];
+            int head = bucketHeads[group];
+            while (head < bucket.length && startGroup(SPandCNandTER.get(bucket[head]).getType()) != group) {
+                head++;
+            }
+            bucketHeads[group] = head;
+            if (head < bucket.length) {
+                return SPandCNandTER.get(bucket[head]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether all points have type 0, in O(1)
+     * @return true if all points have been used, false otherwise
+     */
+    public boolean allPointsAreUsed() {
+        return unusedPoints == 0;
+    }
+
+    /**
+     * Checks whether only CNs can still be used, so that the remaining lines form circles, in O(1)
+     * @return true if there are only connectors left to use, false otherwise
+     */
+    public boolean onlyConnectorsLeft() {
+        return nonConnectorPoints == 0;
+    }
+
+    /**
+     * Sorts the positions of all points into the bucket of their start group, in the order of SPandCNandTER
+     */
+    private void fillBuckets() {
+        int[] sizes = new int[3];
+        for (Point point : SPandCNandTER) {
+            int group = startGroup(point.getType());
+            if (group >= 0) {
+                sizes[group]++;
+            }
+        }
+        buckets = new int[][] {new int[sizes[0]], new int[sizes[1]], new int[sizes[2]]};
+        bucketHeads = new int[3];
+        int[] fill = new int[3];
+        for (int position = 0; position < SPandCNandTER.size(); position++) {
+            int group = startGroup(SPandCNandTER.get(position).getType());
+            if (group >= 0) {
+                buckets[group][fill[group]++] = position;
+            }
+        }
+        bucketsOutdated = false;
+    }
+
+    /**
+     * Maps a point type to its group in the order in which start points are chosen
+     * @param type type of a point (see Point class)
+     * @return 0 for TER, 1 for SP, 2 for CN, -1 for points that have been used up
+     */
+    private static int startGroup(int type) {
+        if (type >= 4) {
+            return 0;
+        } else if (type == 1) {
+            return 1;
+        } else if (type == 2 || type == 3) {
+            return 2;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a point with a type to the counters or removes it
+     * @param type type of the point
+     * @param amount 1 to add the point, -1 to remove it
+     */
+    private void count(int type, int amount) {
+        if (type != 0) {
+            unusedPoints += amount;
+            if (type != 2 && type != 3) {
+                nonConnectorPoints += amount;
+            }
+        }
+    }
+}
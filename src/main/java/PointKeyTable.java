@@ -0,0 +1,173 @@
+import java.util.Arrays;
+
+/**
+ * Hash table for points that works on primitive keys instead of Point objects.
+ * Keys are the packed x,y coordinates of a point (see Point.packKey()). Every distinct key that is added
+ * receives a consecutive id (0, 1, 2, ...) in the order of its first occurrence, and the table counts
+ * how often each key has been added. The count of a key is therefore the connectivity of the point,
+ * which is what the point types are based on (see Point class).
+ * The table uses open addressing with linear probing, so no objects are created per entry.
+ */
+public class PointKeyTable {
+
+    // marks an empty slot in the slots array
+    private static final int EMPTY = -1;
+
+    // id of the key that is stored in a slot, or EMPTY
+    private int[] slots;
+    // key for each id
+    private long[] keys;
+    // number of occurrences for each id
+    private int[] counts;
+    // number of distinct keys, which is also the next id to hand out
+    private int size;
+
+    //Constructor
+    public PointKeyTable(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedKeys) * 2 - 1) << 1;
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        keys = new long[Math.max(4, expectedKeys)];
+        counts = new int[keys.length];
+    }
+
+    /**
+     * Adds one occurrence of a key. If the key has not been seen before, it receives the next free id.
+     * @param key packed x,y coordinates
+     * @return id of the key
+     */
+    public int add(long key) {
+        int id = findOrInsert(key);
+        counts[id]++;
+        return id;
+    }
+
+    /**
+     * Returns the id of a key without adding an occurrence. If the key has not been seen before,
+     * it receives the next free id with a count of 0.
+     * @param key packed x,y coordinates
+     * @return id of the key
+     */
+    public int idOf(long key) {
+        return findOrInsert(key);
+    }
+
+    /**
+     * Looks up the id of a key.
+     * @param key packed x,y coordinates
+     * @return id of the key, or -1 if the key is not part of the table
+     */
+    public int indexOf(long key) {
+        int mask = slots.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot];
+            if (id == EMPTY) {
+                return -1;
+            }
+            if (keys[id] == key) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Getter for the number of occurrences of a key
+     * @param id id of the key
+     * @return number of times the key has been added
+     */
+    public int count(int id) {
+        return counts[id];
+    }
+
+    /**
+     * Overwrites the number of occurrences of a key
+     * @param id id of the key
+     * @param count new number of occurrences
+     */
+    public void setCount(int id, int count) {
+        counts[id] = count;
+    }
+
+    /**
+     * Getter for the key of an id
+     * @param id id of the key
+     * @return packed x,y coordinates
+     */
+    public long key(int id) {
+        return keys[id];
+    }
+
+    /**
+     * Getter for the number of distinct keys
+     * @return number of distinct keys, ids range from 0 to size()-1
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Searches the slot of a key and inserts the key if it is not present yet.
+     * @param key packed x,y coordinates
+     * @return id of the key
+     */
+    private int findOrInsert(long key) {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            int id = slots[slot];
+            if (id == EMPTY) {
+                break;
+            }
+            if (keys[id] == key) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        int id = size++;
+        keys[id] = key;
+        slots[slot] = id;
+
+        // keep the load factor at or below 0.5 so that probe sequences stay short
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * Rebuilds the slots array with a new capacity. Ids and counts are not affected.
+     * @param capacity new number of slots, must be a power of two
+     */
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hash(keys[id]) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+
+    /**
+     * Spreads the bits of a key, so that neighbouring coordinates do not end up in neighbouring slots.
+     * (finalizer of the 64 bit MurmurHash3)
+     * @param key packed x,y coordinates
+     * @return hash value
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
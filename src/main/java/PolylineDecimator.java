@@ -0,0 +1,221 @@
+import java.util.Arrays;
+
+/**
+ * Reduces the number of points of a polyline to what can actually be seen on the screen before it is handed
+ * to XChart (level of detail). The shape is kept with the Ramer-Douglas-Peucker algorithm: a point is only
+ * dropped if it is less than the tolerance (e.g. half a pixel) away from the simplified line.
+ * Distances are measured in pixels, so the x and y axes may have different scales.
+ * Only the part of the polyline that lies in the visible area (viewport) is simplified. Lines outside of it
+ * are replaced by a gap (a point with y = NaN, which XChart does not connect), so that a zoomed in view
+ * only needs the few points around it, but at full detail.
+ */
+public class PolylineDecimator {
+
+    // x and y coordinates of the result
+    private double[] resultX;
+    private double[] resultY;
+    // number of points in the result
+    private int resultSize;
+
+    // visible area
+    private final double minX;
+    private final double maxX;
+    private final double minY;
+    private final double maxY;
+    // size of a pixel in x and y direction
+    private final double pixelWidth;
+    private final double pixelHeight;
+    // maximal distance in pixels of a dropped point to the simplified line
+    private final double tolerance;
+
+    /**
+     * Creates a decimator for a viewport of the chart
+     * @param minX smallest visible x value
+     * @param maxX largest visible x value
+     * @param minY smallest visible y value
+     * @param maxY largest visible y value
+     * @param widthPixels width of the plot in pixels
+     * @param heightPixels height of the plot in pixels
+     * @param tolerance maximal distance in pixels of a dropped point to the simplified polyline, e.g. 0.5
+     */
+    public PolylineDecimator(double minX, double maxX, double minY, double maxY, int widthPixels, int heightPixels, double tolerance) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        // a viewport without extent (e.g. a single vertical line) is treated as one unit wide
+        this.pixelWidth = (maxX > minX ? maxX - minX : 1) / Math.max(1, widthPixels);
+        this.pixelHeight = (maxY > minY ? maxY - minY : 1) / Math.max(1, heightPixels);
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Decimates a polyline for the viewport.
+     * @param x x coordinates of the points of the polyline
+     * @param y y coordinates of the points of the polyline
+     * @return x coordinates (index 0) and y coordinates (index 1) of the remaining points. Gaps are marked
+     *         by y = NaN. If no line of the polyline is visible, both arrays are empty.
+     */
+    public double[][] decimate(double[] x, double[] y) {
+        resultX = new double[Math.min(x.length, 64)];
+        resultY = new double[resultX.length];
+        resultSize = 0;
+
+        if (x.length == 1) {
+            if (isVisible(x[0], y[0], x[0], y[0])) {
+                append(x[0], y[0]);
+            }
+        }
+
+        // simplify each run of consecutive visible lines on its own
+        int line = 0;
+        while (line < x.length - 1) {
+            if (!isVisible(x[line], y[line], x[line + 1], y[line + 1])) {
+                line++;
+                continue;
+            }
+            int runStart = line;
+            while (line < x.length - 1 && isVisible(x[line], y[line], x[line + 1], y[line + 1])) {
+                line++;
+            }
+            if (resultSize > 0) {
+                append(x[runStart], Double.NaN);
+            }
+            simplify(x, y, runStart, line);
+        }
+        return new double[][] {Arrays.copyOf(resultX, resultSize), Arrays.copyOf(resultY, resultSize)};
+    }
+
+    /**
+     * Decimates a polyline for the viewport like decimate(x, y), but only looks at the given lines, which have been
+     * found to be visible before (see SegmentGrid). The result is the same as of decimate(x, y).
+     * @param x x coordinates of the points of the polyline
+     * @param y y coordinates of the points of the polyline
+     * @param visibleLines positions of the first points of all visible lines of the polyline, in ascending order
+     * @param count number of visible lines
+     * @return x coordinates (index 0) and y coordinates (index 1) of the remaining points, see decimate(x, y)
+     */
+    public double[][] decimate(double[] x, double[] y, int[] visibleLines, int count) {
+        resultX = new double[Math.min(x.length, 64)];
+        resultY = new double[resultX.length];
+        resultSize = 0;
+
+        if (x.length == 1) {
+            if (count > 0) {
+                append(x[0], y[0]);
+            }
+            return new double[][] {Arrays.copyOf(resultX, resultSize), Arrays.copyOf(resultY, resultSize)};
+        }
+
+        // simplify each run of consecutive visible lines on its own
+        int position = 0;
+        while (position < count) {
+            int runStart = visibleLines[position];
+            int line = runStart + 1;
+            position++;
+            while (position < count && visibleLines[position] == line) {
+                line++;
+                position++;
+            }
+            if (resultSize > 0) {
+                append(x[runStart], Double.NaN);
+            }
+            simplify(x, y, runStart, line);
+        }
+        return new double[][] {Arrays.copyOf(resultX, resultSize), Arrays.copyOf(resultY, resultSize)};
+    }
+
+    /**
+     * Checks whether the bounding box of a line overlaps the viewport.
+     * Lines that pass close to a corner are also counted as visible, which only costs a few extra points.
+     * @return true if the line might be visible, false if it is surely outside of the viewport
+     */
+    private boolean isVisible(double x1, double y1, double x2, double y2) {
+        return Math.max(x1, x2) >= minX && Math.min(x1, x2) <= maxX && Math.max(y1, y2) >= minY && Math.min(y1, y2) <= maxY;
+    }
+
+    /**
+     * Simplifies the points first to last with the Ramer-Douglas-Peucker algorithm and appends the kept points.
+     * The algorithm uses a stack of ranges instead of recursion, so that long polylines do not run into a
+     * StackOverflowError.
+     * @param x x coordinates of the polyline
+     * @param y y coordinates of the polyline
+     * @param first position of the first point, which is always kept
+     * @param last position of the last point, which is always kept
+     */
+    private void simplify(double[] x, double[] y, int first, int last) {
+        boolean[] keep = new boolean[last - first + 1];
+        keep[0] = true;
+        keep[keep.length - 1] = true;
+
+        int[] stack = new int[64];
+        int stackSize = 0;
+        stack[stackSize++] = first;
+        stack[stackSize++] = last;
+        while (stackSize > 0) {
+            int to = stack[--stackSize];
+            int from = stack[--stackSize];
+
+            // find the point farthest away from the line between from and to
+            int farthest = -1;
+            double maxDistance = tolerance;
+            for (int i = from + 1; i < to; i++) {
+                double distance = pixelDistance(x[i], y[i], x[from], y[from], x[to], y[to]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+
+            // keep it and check both halves again
+            if (farthest >= 0) {
+                keep[farthest - first] = true;
+                if (stackSize + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[stackSize++] = from;
+                stack[stackSize++] = farthest;
+                stack[stackSize++] = farthest;
+                stack[stackSize++] = to;
+            }
+        }
+
+        for (int i = first; i <= last; i++) {
+            if (keep[i - first]) {
+                append(x[i], y[i]);
+            }
+        }
+    }
+
+    /**
+     * Calculates the distance in pixels of a point to the line between two other points.
+     * The distance to the line itself is used and not to its extension, so that spikes that turn back
+     * along the line are kept.
+     */
+    private double pixelDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double lineX = (bx - ax) / pixelWidth;
+        double lineY = (by - ay) / pixelHeight;
+        double pointX = (px - ax) / pixelWidth;
+        double pointY = (py - ay) / pixelHeight;
+        double squaredLength = lineX * lineX + lineY * lineY;
+        double t = squaredLength == 0 ? 0 : Math.max(0, Math.min(1, (pointX * lineX + pointY * lineY) / squaredLength));
+        double deltaX = pointX - t * lineX;
+        double deltaY = pointY - t * lineY;
+        return Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+    }
+
+    /**
+     * Appends a point to the result
+     * @param x x coordinate
+     * @param y y coordinate, NaN for a gap
+     */
+    private void append(double x, double y) {
+        if (resultSize == resultX.length) {
+            resultX = Arrays.copyOf(resultX, Math.max(16, resultSize * 2));
+            resultY = Arrays.copyOf(resultY, resultX.length);
+        }
+        resultX[resultSize] = x;
+        resultY[resultSize] = y;
+        resultSize++;
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compact list of polylines, where each polyline is a sequence of point ids.
+ * All ids are stored one after another in one int array, and an offset array marks where each polyline begins.
+ * This is the result of LineCrafter.CraftConnectedLines(SegmentStore), the coordinates of the points are
+ * kept in the SegmentStore.
+ */
+public class PolylineList {
+
+    // ids of the points of all polylines, one polyline after another
+    private int[] pointIds;
+    // polyline i consists of pointIds[offsets[i]] to pointIds[offsets[i+1]-1]
+    private int[] offsets;
+    // number of polylines
+    private int size;
+
+    //Constructor
+    public PolylineList() {
+        pointIds = new int[64];
+        offsets = new int[16];
+    }
+
+    /**
+     * Appends a polyline
+     * @param ids ids of the points of the polyline
+     * @param length number of points, the first length entries of ids are used
+     */
+    public void add(int[] ids, int length) {
+        int start = offsets[size];
+        if (start + length > pointIds.length) {
+            pointIds = Arrays.copyOf(pointIds, Math.max(start + length, pointIds.length * 2));
+        }
+        System.arraycopy(ids, 0, pointIds, start, length);
+        if (size + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        size++;
+        offsets[size] = start + length;
+    }
+
+    /**
+     * Appends all polylines of another list
+     * @param other polylines to append, in their order
+     */
+    public void addAll(PolylineList other) {
+        int start = offsets[size];
+        int length = other.offsets[other.size];
+        if (start + length > pointIds.length) {
+            pointIds = Arrays.copyOf(pointIds, Math.max(start + length, pointIds.length * 2));
+        }
+        System.arraycopy(other.pointIds, 0, pointIds, start, length);
+        if (size + other.size + 1 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(size + other.size + 1, offsets.length * 2));
+        }
+        for (int polyline = 1; polyline <= other.size; polyline++) {
+            offsets[size + polyline] = start + other.offsets[polyline];
+        }
+        size += other.size;
+    }
+
+    /**
+     * Getter for the number of polylines
+     * @return number of polylines
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter for the number of points of a polyline
+     * @param polyline index of the polyline
+     * @return number of points
+     */
+    public int pointCount(int polyline) {
+        return offsets[polyline + 1] - offsets[polyline];
+    }
+
+    /**
+     * Getter for a point of a polyline
+     * @param polyline index of the polyline
+     * @param position position of the point in the polyline
+     * @return id of the point
+     */
+    public int pointId(int polyline, int position) {
+        return pointIds[offsets[polyline] + position];
+    }
+
+    /**
+     * Converts the polylines to the format of LineCrafter.CraftConnectedLines(), e.g. for printing or plotting.
+     * @param store store that holds the coordinates of the points
+     * @return list of polylines, where each polyline consists of new Point objects
+     */
+    public ArrayList<ArrayList<Point>> toLinienzuege(SegmentStore store) {
+        ArrayList<ArrayList<Point>> linienzuege = new ArrayList<>(size);
+        for (int polyline = 0; polyline < size; polyline++) {
+            ArrayList<Point> linienzug = new ArrayList<>(pointCount(polyline));
+            for (int position = 0; position < pointCount(polyline); position++) {
+                linienzug.add(store.toPoint(pointId(polyline, position)));
+            }
+            linienzuege.add(linienzug);
+        }
+        return linienzuege;
+    }
+}
@@ -0,0 +1,194 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ranking of polylines by their length in descending order, so that the longest polyline has rank 0.
+ * In contrast to the map of LineCrafter.sortLinienzuege(), polylines with the same length are all kept.
+ * They keep the order in which they were crafted (the sort is stable).
+ * The lengths are kept in a double array and the polylines are sorted by their index with a merge sort
+ * on an int array, so that no boxed Double or tree node is created per polyline.
+ * Large rankings are sorted in parallel on the common ForkJoinPool.
+ */
+public class PolylineRanking {
+
+    // rankings with at least this many polylines are sorted in parallel
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    // parts of the sort with at most this many polylines are not split any further
+    private static final int SEQUENTIAL_SIZE = 1 << 13;
+    // parts with at most this many polylines are sorted by insertion sort
+    private static final int INSERTION_SIZE = 32;
+
+    // ranked polylines, null if the ranking was created from lengths only
+    private final ArrayList<ArrayList<Point>> linienzuege;
+    // length of each polyline, in the order of the polylines
+    private final double[] lengths;
+    // index of the polyline for each rank
+    private final int[] order;
+
+    /**
+     * Ranks polylines by the given lengths
+     * @param linienzuege polylines to rank, may be null if only the order of the indices is needed
+     * @param lengths length of each polyline, in the order of the polylines
+     */
+    public PolylineRanking(ArrayList<ArrayList<Point>> linienzuege, double[] lengths) {
+        this.linienzuege = linienzuege;
+        this.lengths = lengths;
+        this.order = new int[lengths.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[order.length];
+        if (order.length >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new SortTask(order, buffer, 0, order.length));
+        } else {
+            sort(order, buffer, 0, order.length);
+        }
+    }
+
+    /**
+     * Getter for the number of ranked polylines
+     * @return number of polylines
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Getter for the index of the polyline with a given rank
+     * @param rank rank of the polyline, 0 is the longest polyline
+     * @return index of the polyline in the list of polylines
+     */
+    public int indexAt(int rank) {
+        return order[rank];
+    }
+
+    /**
+     * Getter for the length of the polyline with a given rank
+     * @param rank rank of the polyline, 0 is the longest polyline
+     * @return length of the polyline
+     */
+    public double lengthAt(int rank) {
+        return lengths[order[rank]];
+    }
+
+    /**
+     * Getter for the polyline with a given rank
+     * @param rank rank of the polyline, 0 is the longest polyline
+     * @return the polyline
+     */
+    public ArrayList<Point> linienzugAt(int rank) {
+        return linienzuege.get(order[rank]);
+    }
+
+    /**
+     * Getter for the ranked polylines
+     * @return polylines in the order in which they were given, not in the order of their rank
+     */
+    public ArrayList<ArrayList<Point>> getLinienzuege() {
+        return linienzuege;
+    }
+
+    /**
+     * Getter for the lengths of all polylines in descending order
+     * @return new array with the lengths, index = rank
+     */
+    public double[] rankedLengths() {
+        double[] ranked = new double[order.length];
+        for (int rank = 0; rank < order.length; rank++) {
+            ranked[rank] = lengths[order[rank]];
+        }
+        return ranked;
+    }
+
+    /**
+     * Checks whether a polyline has to be ranked before another one
+     * @param a index of the first polyline
+     * @param b index of the second polyline
+     * @return true if a is longer than b, or if they have the same length and a was crafted first
+     */
+    private boolean before(int a, int b) {
+        return lengths[a] > lengths[b] || (lengths[a] == lengths[b] && a < b);
+    }
+
+    /**
+     * Sorts a part of the indices with a stable merge sort.
+     * @param indices indices to sort
+     * @param buffer temporary storage of the same size
+     * @param from first position of the part
+     * @param to position after the part
+     */
+    private void sort(int[] indices, int[] buffer, int from, int to) {
+        if (to - from <= INSERTION_SIZE) {
+            for (int i = from + 1; i < to; i++) {
+                int index = indices[i];
+                int j = i - 1;
+                while (j >= from && before(index, indices[j])) {
+                    indices[j + 1] = indices[j];
+                    j--;
+                }
+                indices[j + 1] = index;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(indices, buffer, from, middle);
+        sort(indices, buffer, middle, to);
+        merge(indices, buffer, from, middle, to);
+    }
+
+    /**
+     * Merges two sorted neighbouring parts of the indices.
+     * @param indices indices, sorted from..middle and middle..to
+     * @param buffer temporary storage of the same size
+     * @param from first position of the first part
+     * @param middle first position of the second part
+     * @param to position after the second part
+     */
+    private void merge(int[] indices, int[] buffer, int from, int middle, int to) {
+        if (!before(indices[middle], indices[middle - 1])) {
+            return; // already in order
+        }
+        System.arraycopy(indices, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && !before(buffer[right], buffer[left]))) {
+                indices[i] = buffer[left++];
+            } else {
+                indices[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * Task for the parallel merge sort: sorts both halves in parallel and merges them.
+     */
+    private class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] indices;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+
+        SortTask(int[] indices, int[] buffer, int from, int to) {
+            this.indices = indices;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_SIZE) {
+                sort(indices, buffer, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SortTask(indices, buffer, from, middle), new SortTask(indices, buffer, middle, to));
+            merge(indices, buffer, from, middle, to);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running local service that crafts and ranks polylines over HTTP, so that other tools do not have to start a
+ * JVM for every input and parse the console output of Main. The JVM stays warm between the requests.
+ * The service only listens on the loopback address.
+ * POST /polylines with the lines in the body, in the format of input.txt (4 numbers per line), is read, crafted and
+ * ranked like with Main --store. Query parameters:
+ * - top=K keeps only the K longest polylines (see TopKPolylines)
+ * - snap=T snaps endpoints within a distance of T (see EndpointSnapper)
+ * - format=json (default) or format=binary, the binary form is also chosen by "Accept: application/octet-stream"
+ * The JSON response has the form
+ * {"lines": 12, "malformedLines": ["line 3: ..."], "polylines": [{"length": 12.5, "points": [[1, 2], [3, 4]]}, ...]}
+ * with the polylines in the order of their rank. The binary response is big endian: the number of polylines (int),
+ * then for each polyline its length (double), its number of points (int) and x, y of each point (ints).
+ * GET /status returns the number of running, queued, completed and rejected requests as JSON.
+ * The requests are crafted on a fixed number of worker threads with a bounded queue. When all workers are busy and
+ * the queue is full, a request is answered with 503 and a Retry-After header at once, before its body is read,
+ * instead of piling up (back-pressure). So at most threads + queue bodies are held at the same time, and the memory
+ * for the bodies is bounded by (threads + queue) * max-body (32 MB by default, about a million lines).
+ * Usage: java PolylineService [--port 8080] [--threads N] [--queue N] [--max-body MB]
+ */
+public class PolylineService {
+
+    // extra threads for reading requests, so that a full queue can be reported while all workers are busy
+    private static final int SPARE_CONNECTION_THREADS = 4;
+
+    private final HttpServer server;
+    // threads that craft the polylines, with a bounded queue
+    private final ThreadPoolExecutor workers;
+    // threads that read the requests and write the responses
+    private final ExecutorService connections;
+    // one permit for each worker and each place in the queue, taken before the body of a request is read
+    private final Semaphore admissions;
+    // maximal size of a request body in bytes
+    private final int maxBodyBytes;
+    private final AtomicLong completedRequests = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    /**
+     * Creates the service, it is started with start()
+     * @param port port on the loopback address, 0 for any free port
+     * @param threads number of worker threads
+     * @param queueCapacity number of requests that wait for a worker before requests are rejected
+     * @param maxBodyBytes maximal size of a request body in bytes
+     * @throws IOException if the port cannot be opened
+     */
+    public PolylineService(int port, int threads, int queueCapacity, int maxBodyBytes) throws IOException {
+        if (threads < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("threads must be at least 1 and the queue must not be negative, but are "
+                    + threads + " and " + queueCapacity);
+        }
+        this.maxBodyBytes = maxBodyBytes;
+        // without a queue, a request is rejected whenever all workers are busy
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                queueCapacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadPoolExecutor.AbortPolicy());
+        admissions = new Semaphore(threads + queueCapacity);
+        connections = Executors.newFixedThreadPool(threads + queueCapacity + SPARE_CONNECTION_THREADS);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(connections);
+        server.createContext("/polylines", this::handlePolylines);
+        server.createContext("/status", this::handleStatus);
+    }
+
+    public static void main(String[] args) {
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = 4 * threads;
+        int maxBodyMegabytes = 32;
+        try {
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                int value = Integer.parseInt(args[i + 1]);
+                if (args[i].equals("--port")) {
+                    port = value;
+                } else if (args[i].equals("--threads")) {
+                    threads = value;
+                } else if (args[i].equals("--queue")) {
+                    queueCapacity = value;
+                } else if (args[i].equals("--max-body")) {
+                    maxBodyMegabytes = value;
+                } else {
+                    throw new IllegalArgumentException("Unknown argument " + args[i]);
+                }
+            }
+            if (args.length % 2 != 0) {
+                throw new IllegalArgumentException("Missing value for " + args[args.length - 1]);
+            }
+        } catch (IllegalArgumentException exception) {
+            System.err.println("Invalid arguments: " + exception.getMessage());
+            System.err.println("Usage: java PolylineService [--port 8080] [--threads N] [--queue N] [--max-body MB]");
+            return;
+        }
+
+        try {
+            PolylineService service = new PolylineService(port, threads, queueCapacity,
+                    (int) Math.min(Integer.MAX_VALUE - 8, maxBodyMegabytes * 1024L * 1024L));
+            Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+            service.start();
+            System.out.println("Polyline service is listening on http://" + service.getAddress().getHostString() + ":"
+                    + service.getAddress().getPort() + " with " + threads + " workers.");
+        } catch (IOException IOexception) {
+            System.err.println("Could not start the polyline service on port " + port);
+            IOexception.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts to accept requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the service, running requests get up to one second to finish
+     */
+    public void stop() {
+        server.stop(1);
+        workers.shutdownNow();
+        connections.shutdownNow();
+    }
+
+    /**
+     * Getter for the address of the service
+     * @return loopback address with the port that has been opened
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Handles POST /polylines: reads the lines, crafts them on a worker and writes the ranked polylines
+     * @param exchange request and response
+     * @throws IOException if the connection fails
+     */
+    private void handlePolylines(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendText(exchange, 405, "Use POST with the lines in the body");
+                return;
+            }
+            Map<String, String> parameters = queryParameters(exchange.getRequestURI().getRawQuery());
+            int topK;
+            int snapTolerance;
+            try {
+                topK = Integer.parseInt(parameters.getOrDefault("top", "0"));
+                snapTolerance = Integer.parseInt(parameters.getOrDefault("snap", "0"));
+            } catch (NumberFormatException NFexception) {
+                sendText(exchange, 400, "top and snap need numbers");
+                return;
+            }
+            if (topK < 0 || snapTolerance < 0) {
+                sendText(exchange, 400, "top and snap must not be negative");
+                return;
+            }
+            String accept = exchange.getRequestHeaders().getFirst("Accept");
+            boolean binary = parameters.getOrDefault("format",
+                    accept != null && accept.contains("application/octet-stream") ? "binary" : "json").equals("binary");
+
+            // reject the request before its body is read if there is no free worker and no free place in the queue
+            if (!admissions.tryAcquire()) {
+                rejectBusy(exchange);
+                return;
+            }
+            try {
+                byte[] body = readBody(exchange.getRequestBody());
+                if (body == null) {
+                    sendText(exchange, 413, "The body is larger than " + maxBodyBytes + " bytes");
+                    return;
+                }
+
+                long start = System.nanoTime();
+                Future<byte[]> response;
+                try {
+                    response = workers.submit(() -> craft(body, topK, snapTolerance, binary));
+                } catch (RejectedExecutionException REexception) {
+                    // a worker has finished its request, but has not taken the next one from the queue yet
+                    rejectBusy(exchange);
+                    return;
+                }
+                byte[] result;
+                try {
+                    result = response.get();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    response.cancel(true);
+                    sendText(exchange, 503, "The service is stopping");
+                    return;
+                } catch (ExecutionException exception) {
+                    System.err.println("Request could not be crafted !");
+                    exception.getCause().printStackTrace();
+                    sendText(exchange, 500, "The polylines could not be crafted: " + exception.getCause());
+                    return;
+                }
+                completedRequests.incrementAndGet();
+                exchange.getResponseHeaders().set("Content-Type", binary ? "application/octet-stream" : "application/json");
+                exchange.getResponseHeaders().set("X-Craft-Millis", Long.toString((System.nanoTime() - start) / 1_000_000));
+                exchange.sendResponseHeaders(200, result.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(result);
+                }
+            } finally {
+                admissions.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Answers a request with 503, because all workers are busy and the queue is full
+     * @param exchange request and response
+     * @throws IOException if the connection fails
+     */
+    private void rejectBusy(HttpExchange exchange) throws IOException {
+        rejectedRequests.incrementAndGet();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        sendText(exchange, 503, "All workers are busy, try again later");
+    }
+
+    /**
+     * Handles GET /status: the state of the worker pool as JSON
+     * @param exchange request and response
+     * @throws IOException if the connection fails
+     */
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try {
+            String status = "{\"runningRequests\": " + workers.getActiveCount()
+                    + ", \"queuedRequests\": " + workers.getQueue().size()
+                    + ", \"completedRequests\": " + completedRequests.get()
+                    + ", \"rejectedRequests\": " + rejectedRequests.get() + "}";
+            byte[] bytes = status.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Crafts and ranks the polylines of one request, with the same steps as Main --store
+     * @param body lines in the format of input.txt
+     * @param topK number of longest polylines to keep, 0 for all
+     * @param snapTolerance tolerance for snapping endpoints, 0 for no snapping
+     * @param binary true for the binary response, false for JSON
+     * @return the response body
+     * @throws IOException if the response cannot be encoded
+     */
+    private static byte[] craft(byte[] body, int topK, int snapTolerance, boolean binary) throws IOException {
+        SegmentCoordinates coordinates = new SegmentCoordinates(body.length / 16);
+        InputHandler.parseLines(ByteBuffer.wrap(body), 0, body.length, 1, coordinates);
+        SegmentStore store = SegmentStore.fromCoordinates(EndpointSnapper.snap(coordinates, snapTolerance));
+
+        // a new LineCrafter per request, because a LineCrafter keeps state between its calls
+        LineCrafter lineCrafter = new LineCrafter();
+        lineCrafter.getAllPointTypes(store);
+        PolylineRanking ranking;
+        if (topK > 0) {
+            TopKPolylines topPolylines = new TopKPolylines(topK);
+            lineCrafter.CraftConnectedLines(store, topPolylines);
+            ranking = topPolylines.toRanking();
+        } else {
+            ranking = lineCrafter.rankLinienzuege(lineCrafter.CraftConnectedLines(store).toLinienzuege(store));
+        }
+        return binary ? toBinary(ranking) : toJson(coordinates, ranking);
+    }
+
+    /**
+     * Encodes the ranked polylines as JSON
+     * @param coordinates lines of the request, for the number of lines and the malformed lines
+     * @param ranking ranked polylines
+     * @return UTF-8 bytes of the JSON document
+     */
+    private static byte[] toJson(SegmentCoordinates coordinates, PolylineRanking ranking) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"lines\": ").append(coordinates.size()).append(", \"malformedLines\": [");
+        List<String> malformedLines = coordinates.getMalformedLines();
+        for (int i = 0; i < malformedLines.size(); i++) {
+            appendJsonString(json.append(i > 0 ? ", " : ""), malformedLines.get(i));
+        }
+        json.append("], \"polylines\": [");
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            json.append(rank > 0 ? ", " : "").append("{\"length\": ").append(ranking.lengthAt(rank)).append(", \"points\": [");
+            ArrayList<Point> linienzug = ranking.linienzugAt(rank);
+            for (int i = 0; i < linienzug.size(); i++) {
+                json.append(i > 0 ? ", " : "").append('[').append(linienzug.get(i).getX()).append(", ")
+                        .append(linienzug.get(i).getY()).append(']');
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends a text as JSON string, with quotes and escaped special characters
+     * @param json receives the string
+     * @param text the text
+     */
+    private static void appendJsonString(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Encodes the ranked polylines in the binary form (see class comment)
+     * @param ranking ranked polylines
+     * @return bytes of the response
+     * @throws IOException never, the bytes are written to memory
+     */
+    private static byte[] toBinary(PolylineRanking ranking) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(ranking.size());
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            ArrayList<Point> linienzug = ranking.linienzugAt(rank);
+            output.writeDouble(ranking.lengthAt(rank));
+            output.writeInt(linienzug.size());
+            for (Point point : linienzug) {
+                output.writeInt(point.getX());
+                output.writeInt(point.getY());
+            }
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the body of a request
+     * @param input body of the request
+     * @return the bytes of the body, or null if it is larger than maxBodyBytes
+     * @throws IOException if the body cannot be read
+     */
+    private byte[] readBody(InputStream input) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+        for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+            if (body.size() + read > maxBodyBytes) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Splits the query of a request into its parameters
+     * @param rawQuery query of the request URI, may be null
+     * @return parameters by name, a parameter without value has an empty value
+     */
+    private static Map<String, String> queryParameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            String value = separator < 0 ? "" : parameter.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Sends a plain text response
+     * @param exchange request and response
+     * @param status HTTP status code
+     * @param message text of the response
+     * @throws IOException if the connection fails
+     */
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+import java.util.ArrayList;
+
+/**
+ * Receiver for polylines that are handed over one by one, as soon as the crafting algorithm has completed them.
+ * Used instead of collecting all polylines in one list (see e.g. LineCrafter.CraftConnectedLinesIterative()).
+ */
+public interface PolylineSink {
+
+    /**
+     * Receives one complete polyline
+     * @param linienzug polyline consisting of consecutive points
+     */
+    void accept(ArrayList<Point> linienzug);
+}
@@ -0,0 +1,179 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes each polyline as soon as it has been crafted, to a file or to the console.
+ * The crafting thread only puts the polyline into a bounded queue. A background thread takes the polylines
+ * from the queue, formats them and writes them through a large buffer. Like this, the output runs at the
+ * same time as the crafting, and at most QUEUE_CAPACITY polylines are held in memory, no matter how many
+ * polylines are crafted. If the writer falls behind, the crafting thread waits until the queue has room again.
+ * Each polyline is written as two lines, with its number in the order of crafting and its length:
+ * "Linienzug 1 mit Distanz 12.345 Einheiten" and "x,y Koordinaten der Punkte im Linienzug [( x,y: 1, 2), ...]".
+ * The sink has to be closed after the crafting, which waits until all polylines have been written.
+ */
+public class PrintingPolylineSink implements PolylineSink, AutoCloseable {
+
+    // maximal number of polylines that wait for the writer
+    private static final int QUEUE_CAPACITY = 4096;
+    // size of the output buffer in characters
+    private static final int BUFFER_SIZE = 1 << 16;
+    // marks the end of the polylines in the queue
+    private static final ArrayList<Point> END = new ArrayList<>();
+
+    private final BlockingQueue<ArrayList<Point>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Writer writer;
+    // true if the writer has to be closed at the end, false for the console
+    private final boolean closeWriter;
+    private final Thread writerThread;
+    // first problem of the background thread, reported to the crafting thread
+    private volatile IOException failure;
+    // number of polylines received so far
+    private long received;
+    private boolean closed;
+
+    private PrintingPolylineSink(Writer writer, boolean closeWriter, String name) {
+        this.writer = writer;
+        this.closeWriter = closeWriter;
+        writerThread = new Thread(this::writePolylines, name);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Creates a sink that writes the polylines to a file
+     * @param file file to write, an existing file is replaced
+     * @return the started sink
+     * @throws IOException if the file cannot be created
+     */
+    public static PrintingPolylineSink toFile(Path file) throws IOException {
+        return new PrintingPolylineSink(Files.newBufferedWriter(file, StandardCharsets.UTF_8), true, "polyline-writer " + file);
+    }
+
+    /**
+     * Creates a sink that writes the polylines to System.out
+     * @return the started sink
+     */
+    public static PrintingPolylineSink toConsole() {
+        return new PrintingPolylineSink(new BufferedWriter(new OutputStreamWriter(System.out), BUFFER_SIZE), false, "polyline-writer console");
+    }
+
+    /**
+     * Hands a polyline to the background thread, waits if the queue is full
+     * @param linienzug polyline consisting of consecutive points, it must not be changed afterwards
+     */
+    @Override
+    public void accept(ArrayList<Point> linienzug) {
+        if (failure != null) {
+            throw new UncheckedIOException("The polylines could not be written", failure);
+        }
+        try {
+            queue.put(linienzug);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the polyline writer", exception);
+        }
+        received++;
+    }
+
+    /**
+     * Getter for the number of polylines received so far
+     * @return number of polylines that have been handed to this sink
+     */
+    public long getReceived() {
+        return received;
+    }
+
+    /**
+     * Waits until all polylines have been written and closes the file. The console is only flushed.
+     * @throws IOException if the polylines could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the polyline writer", exception);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Loop of the background thread: writes the polylines from the queue until the end mark arrives.
+     * After a problem, the remaining polylines are only taken from the queue, so that the crafting thread
+     * does not wait forever.
+     */
+    private void writePolylines() {
+        StringBuilder text = new StringBuilder();
+        long number = 0;
+        try {
+            for (ArrayList<Point> linienzug = queue.take(); linienzug != END; linienzug = queue.take()) {
+                if (failure != null) {
+                    continue;
+                }
+                try {
+                    text.setLength(0);
+                    appendPolyline(text, ++number, linienzug);
+                    writer.append(text);
+                } catch (IOException IOexception) {
+                    failure = IOexception;
+                }
+            }
+            if (closeWriter) {
+                writer.close();
+            } else {
+                writer.flush();
+            }
+        } catch (IOException IOexception) {
+            if (failure == null) {
+                failure = IOexception;
+            }
+        } catch (InterruptedException exception) {
+            failure = new IOException("Polyline writer has been interrupted", exception);
+        }
+    }
+
+    /**
+     * Formats one polyline without String.format(): the length is rounded to 3 decimals
+     * @param text receives the text
+     * @param number number of the polyline, starting with 1
+     * @param linienzug the polyline
+     */
+    static void appendPolyline(StringBuilder text, long number, ArrayList<Point> linienzug) {
+        long thousandths = Math.round(LineCrafter.calculateLength(linienzug) * 1000);
+        long fraction = thousandths % 1000;
+        text.append("Linienzug ").append(number).append(" mit Distanz ").append(thousandths / 1000).append('.');
+        if (fraction < 100) {
+            text.append('0');
+        }
+        if (fraction < 10) {
+            text.append('0');
+        }
+        text.append(fraction).append(" Einheiten\n");
+        text.append("x,y Koordinaten der Punkte im Linienzug [");
+        for (int i = 0; i < linienzug.size(); i++) {
+            Point point = linienzug.get(i);
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append("( x,y: ").append(point.getX()).append(", ").append(point.getY()).append(')');
+        }
+        text.append("]\n\n");
+    }
+}
@@ -0,0 +1,104 @@
+import org.knowm.xchart.QuickChart;
+import org.knowm.xchart.XChartPanel;
+import org.knowm.xchart.XYChart;
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chart to which polylines are appended while they are still being crafted, so that the window shows the first
+ * polylines long before the crafting is finished.
+ * The polylines arrive in batches (e.g. from SwingWorker.process()). Every batch is added to the chart at once,
+ * but the panel is not repainted for every batch: a timer repaints it at most every REPAINT_INTERVAL milliseconds
+ * and only if polylines have been added since the last repaint, because each repaint draws all series again.
+ * All methods have to be called on the event dispatch thread.
+ */
+public class ProgressiveChart {
+
+    // minimal time in milliseconds between two repaints while polylines are added
+    private static final int REPAINT_INTERVAL = 250;
+
+    // holds the status label until the first polyline arrives, then the chart panel
+    private final JPanel container = new JPanel(new BorderLayout());
+    private final JLabel statusLabel = new JLabel("Die Linienzuege werden erstellt ...", SwingConstants.CENTER);
+    private XYChart chart;
+    private XChartPanel<XYChart> panel;
+    // number of series in the chart
+    private int seriesCount;
+    // true if polylines have been added since the last repaint
+    private boolean changed;
+    // repaints the panel while polylines are added
+    private final Timer repaintTimer;
+
+    //Constructor
+    public ProgressiveChart() {
+        // same size as the panel of a QuickChart, so that the window keeps its size when the chart replaces the label
+        statusLabel.setPreferredSize(new Dimension(600, 400));
+        container.add(statusLabel, BorderLayout.CENTER);
+        repaintTimer = new Timer(REPAINT_INTERVAL, event -> repaintIfChanged());
+        repaintTimer.start();
+    }
+
+    /**
+     * Getter for the component that shows the chart
+     * @return panel with the status label or the chart
+     */
+    public JComponent getContainer() {
+        return container;
+    }
+
+    /**
+     * Appends a batch of polylines to the chart, each as a new series. The panel is repainted by the timer.
+     * @param linienzuege polylines, an inner list consists of consecutive points and characterizes one polyline
+     */
+    public void append(List<ArrayList<Point>> linienzuege) {
+        for (ArrayList<Point> linienzug : linienzuege) {
+            if (linienzug.isEmpty()) {
+                continue;
+            }
+            double[] x = new double[linienzug.size()];
+            double[] y = new double[linienzug.size()];
+            for (int j = 0; j < linienzug.size(); j++) {
+                x[j] = linienzug.get(j).getX();
+                y[j] = linienzug.get(j).getY();
+            }
+            seriesCount++;
+            if (chart == null) {
+                // Initialize the chart with the first polyline, like PlotCreator.createChart()
+                chart = QuickChart.getChart("Linienzuege", "X", "Y", "Linienzug 1", x, y);
+                panel = new XChartPanel<>(chart);
+                container.remove(statusLabel);
+                container.add(panel, BorderLayout.CENTER);
+                container.revalidate();
+            } else {
+                chart.addSeries("Linienzug " + seriesCount, x, y);
+            }
+            changed = true;
+        }
+    }
+
+    /**
+     * Stops the timer after the last polyline has been appended and shows the complete chart
+     * @param message text to show instead of the chart if no polyline has been appended, e.g. an error
+     */
+    public void finish(String message) {
+        repaintTimer.stop();
+        if (chart == null) {
+            statusLabel.setText(message);
+        } else {
+            changed = true;
+            repaintIfChanged();
+        }
+    }
+
+    /**
+     * Repaints the panel if polylines have been added since the last repaint
+     */
+    private void repaintIfChanged() {
+        if (changed && panel != null) {
+            changed = false;
+            panel.repaint();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Cache for crafted and ranked polylines on disk, so that the same input does not have to be crafted again,
+ * e.g. when the result is only printed or plotted once more.
+ * An entry is found by a key (see key()), the SHA-256 hash of the set of lines of the input together with
+ * LineCrafter.RULE_VERSION and the options that change the result. The order of the lines and the direction of
+ * each line do not change the key, but every duplicate line does.
+ * Each entry is one file in the cache directory with the polylines and their lengths. The points of a polyline
+ * are stored as zigzag varint differences to the previous point, so an entry is much smaller than the input.
+ * When the entries together get larger than the size limit, the least recently used entries are deleted.
+ * The last use of an entry is its modification time, which is updated on every hit.
+ */
+public class ResultCache {
+
+    // first bytes of a cache entry, "DPRC"
+    private static final int MAGIC = 0x44505243;
+    // extension of the files of the cache entries
+    private static final String SUFFIX = ".polylines";
+
+    // directory with the cache entries
+    private final Path directory;
+    // maximal size of all entries together in bytes
+    private final long maxBytes;
+
+    /**
+     * Opens a cache directory, the directory is created if it does not exist yet
+     * @param directory directory with the cache entries
+     * @param maxBytes maximal size of all entries together in bytes
+     * @throws IOException if the directory cannot be created
+     */
+    public ResultCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Creates the key of the result for some input lines. The lines are normalized first: each point is
+     * replaced by its rank among all distinct points, each line is turned so that it starts at the smaller rank,
+     * and the lines are sorted. The hash covers the distinct points, the normalized lines,
+     * LineCrafter.RULE_VERSION and the options.
+     * @param coordinates lines of the input data
+     * @param options options that change the result, e.g. the number of kept polylines
+     * @return SHA-256 hash as hex string
+     */
+    public static String key(SegmentCoordinates coordinates, String options) {
+        int lineCount = coordinates.size();
+
+        // distinct points in sorted order
+        long[] points = new long[2 * lineCount];
+        for (int line = 0; line < lineCount; line++) {
+            points[2 * line] = Point.packKey(coordinates.getX1(line), coordinates.getY1(line));
+            points[2 * line + 1] = Point.packKey(coordinates.getX2(line), coordinates.getY2(line));
+        }
+        Arrays.parallelSort(points);
+        int pointCount = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (i == 0 || points[i] != points[i - 1]) {
+                points[pointCount++] = points[i];
+            }
+        }
+
+        // each line as the ranks of its two points, the smaller rank first, in sorted order
+        long[] lines = new long[lineCount];
+        for (int line = 0; line < lineCount; line++) {
+            long start = Arrays.binarySearch(points, 0, pointCount, Point.packKey(coordinates.getX1(line), coordinates.getY1(line)));
+            long end = Arrays.binarySearch(points, 0, pointCount, Point.packKey(coordinates.getX2(line), coordinates.getY2(line)));
+            lines[line] = Math.min(start, end) << 32 | Math.max(start, end);
+        }
+        Arrays.parallelSort(lines);
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            // every Java platform has to support SHA-256
+            throw new IllegalStateException(exception);
+        }
+        digest.update(("drawplot rules " + LineCrafter.RULE_VERSION + ", " + options).getBytes(StandardCharsets.UTF_8));
+        // the buffer is hashed whenever the next long does not fit, the count before the points shifts the longs
+        // by 4 bytes, so the buffer is never completely full
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        buffer.putInt(pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            if (buffer.remaining() < Long.BYTES) {
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+            buffer.putLong(points[i]);
+        }
+        for (long line : lines) {
+            if (buffer.remaining() < Long.BYTES) {
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+            buffer.putLong(line);
+        }
+        digest.update(buffer.flip());
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Looks up the result for a key. An entry that cannot be read is reported and deleted.
+     * @param key key of the result (see key())
+     * @return the cached ranking, or null if the cache has no result for the key
+     */
+    public PolylineRanking get(String key) {
+        Path file = directory.resolve(key + SUFFIX);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("No cache entry");
+            }
+            int polylineCount = input.readInt();
+            if (polylineCount < 0) {
+                throw new IOException("Corrupt number of polylines " + polylineCount);
+            }
+            ArrayList<ArrayList<Point>> linienzuege = new ArrayList<>(polylineCount);
+            double[] lengths = new double[polylineCount];
+            for (int polyline = 0; polyline < polylineCount; polyline++) {
+                lengths[polyline] = input.readDouble();
+                int pointCount = input.readInt();
+                if (pointCount < 0) {
+                    throw new IOException("Corrupt number of points " + pointCount);
+                }
+                ArrayList<Point> linienzug = new ArrayList<>(pointCount);
+                int x = 0;
+                int y = 0;
+                for (int position = 0; position < pointCount; position++) {
+                    x += readVarint(input);
+                    y += readVarint(input);
+                    linienzug.add(new Point(x, y, 0));
+                }
+                linienzuege.add(linienzug);
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return new PolylineRanking(linienzuege, lengths);
+        } catch (NoSuchFileException NsFexception) {
+            // deleted by another process in the meantime
+            return null;
+        } catch (IOException IOexception) {
+            System.err.println("Cache entry could not be read and is deleted ! " + file);
+            IOexception.printStackTrace();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // the entry is overwritten by the next put() anyway
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result for a key and deletes the least recently used entries if the cache is too large.
+     * The entry is written to a temporary file first, so that a reader never sees an incomplete entry.
+     * @param key key of the result (see key())
+     * @param ranking ranked polylines to store
+     * @throws IOException if the entry cannot be written
+     */
+    public void put(String key, PolylineRanking ranking) throws IOException {
+        ArrayList<ArrayList<Point>> linienzuege = ranking.getLinienzuege();
+        // lengths in the order of the polylines, so that the ranking is the same when it is read again
+        double[] lengths = new double[ranking.size()];
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            lengths[ranking.indexAt(rank)] = ranking.lengthAt(rank);
+        }
+
+        Path temporaryFile = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(linienzuege.size());
+                for (int polyline = 0; polyline < linienzuege.size(); polyline++) {
+                    ArrayList<Point> linienzug = linienzuege.get(polyline);
+                    output.writeDouble(lengths[polyline]);
+                    output.writeInt(linienzug.size());
+                    int x = 0;
+                    int y = 0;
+                    for (Point point : linienzug) {
+                        writeVarint(output, point.getX() - x);
+                        writeVarint(output, point.getY() - y);
+                        x = point.getX();
+                        y = point.getY();
+                    }
+                }
+            }
+            Files.move(temporaryFile, directory.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used entries until all entries together are not larger than the size limit
+     * @throws IOException if the cache directory cannot be read
+     */
+    private void evict() throws IOException {
+        ArrayList<Entry> entries = new ArrayList<>();
+        long totalBytes = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    Entry entry = new Entry(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+                    entries.add(entry);
+                    totalBytes += entry.size;
+                } catch (NoSuchFileException NsFexception) {
+                    // deleted by another process in the meantime
+                }
+            }
+        }
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        entries.sort((a, b) -> Long.compare(a.lastUse, b.lastUse));
+        for (int i = 0; i < entries.size() && totalBytes > maxBytes; i++) {
+            Files.deleteIfExists(entries.get(i).file);
+            totalBytes -= entries.get(i).size;
+        }
+    }
+
+    /**
+     * Writes a difference as zigzag varint: 7 bits per byte, the highest bit marks that another byte follows
+     * @param output stream to write to
+     * @param difference value to write
+     * @throws IOException if the stream cannot be written
+     */
+    private static void writeVarint(DataOutputStream output, int difference) throws IOException {
+        int value = (difference << 1) ^ (difference >> 31);
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+     * Reads a difference written by writeVarint()
+     * @param input stream to read from
+     * @return the difference
+     * @throws IOException if the stream ends or the varint is too long
+     */
+    private static int readVarint(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = input.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        throw new IOException("Corrupt varint in cache entry");
+    }
+
+    /**
+     * File of a cache entry with its size and last use, for the eviction
+     */
+    private static class Entry {
+
+        private final Path file;
+        private final long size;
+        private final long lastUse;
+
+        Entry(Path file, long size, long lastUse) {
+            this.file = file;
+            this.size = size;
+            this.lastUse = lastUse;
+        }
+    }
+}
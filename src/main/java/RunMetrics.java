@@ -0,0 +1,338 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures where the time of a run goes: wall time and allocated bytes of each phase (parsing, typing, crafting,
+ * ranking, plotting) and counters for lines, point types, polylines, closed loops, search steps and snapped points.
+ * The measurements are recorded as JFR events (drawplot.Phase and drawplot.RunSummary, visible in a flight
+ * recording) and can be written as a JSON summary at the end of the run (see writeSummary()).
+ * Metrics are disabled by default. Then startPhase() returns a shared phase that does nothing and add() returns
+ * right away, so that the instrumented methods only pay for reading one static field.
+ * Allocated bytes are measured for the thread that runs the phase. Work that a phase hands to other threads
+ * (e.g. the ForkJoinPool of CraftConnectedLinesParallel()) is included in its wall time, but not in its allocation.
+ */
+public class RunMetrics {
+
+    /**
+     * Counted quantities of a run
+     */
+    public enum Counter {
+        LINES("lines"),
+        MALFORMED_LINES("malformedLines"),
+        SP_POINTS("spPoints"),
+        CN_POINTS("cnPoints"),
+        TER_POINTS("terPoints"),
+        POLYLINES("polylines"),
+        CLOSED_LOOPS("closedLoops"),
+        SEARCH_STEPS("searchSteps"),
+        SNAPPED_POINTS("snappedPoints"),
+        DROPPED_LINES("droppedLines");
+
+        // name of the counter in the summary
+        private final String key;
+
+        Counter(String key) {
+            this.key = key;
+        }
+    }
+
+    // true if metrics are recorded
+    private static volatile boolean enabled;
+
+    // phase that does nothing, returned while metrics are disabled
+    private static final Phase NO_PHASE = new Phase(null);
+    // name of the phase that is currently open on each thread, to count nested calls only once
+    private static final ThreadLocal<String> OPEN_PHASE = new ThreadLocal<>();
+    // measured phases in the order in which they were first started
+    private static final Map<String, PhaseTotal> PHASES = new LinkedHashMap<>();
+    private static final LongAdder[] COUNTERS = new LongAdder[Counter.values().length];
+    static {
+        for (int counter = 0; counter < COUNTERS.length; counter++) {
+            COUNTERS[counter] = new LongAdder();
+        }
+    }
+    // wall time of the run since metrics were enabled
+    private static long runStart;
+
+    private RunMetrics() {
+    }
+
+    /**
+     * Enables the metrics and clears all previous measurements
+     */
+    public static void enable() {
+        synchronized (PHASES) {
+            PHASES.clear();
+        }
+        for (LongAdder counter : COUNTERS) {
+            counter.reset();
+        }
+        runStart = System.nanoTime();
+        enabled = true;
+    }
+
+    /**
+     * Disables the metrics, the measurements so far are kept
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * Checks whether metrics are recorded, e.g. to skip counting that is only needed for the metrics
+     * @return true if metrics are enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts measuring a phase. The phase ends when it is closed, preferably with try-with-resources.
+     * If a phase with the same name is already open on this thread (e.g. in a recursive method),
+     * the inner call is not measured separately.
+     * @param name name of the phase, e.g. "crafting"
+     * @return the started phase
+     */
+    public static Phase startPhase(String name) {
+        if (!enabled || name.equals(OPEN_PHASE.get())) {
+            return NO_PHASE;
+        }
+        return new Phase(name);
+    }
+
+    /**
+     * Adds to a counter
+     * @param counter counter to increase
+     * @param amount amount to add
+     */
+    public static void add(Counter counter, long amount) {
+        if (enabled) {
+            COUNTERS[counter.ordinal()].add(amount);
+        }
+    }
+
+    /**
+     * Getter for the value of a counter
+     * @param counter counter to read
+     * @return sum of all amounts added since the metrics were enabled
+     */
+    public static long get(Counter counter) {
+        return COUNTERS[counter.ordinal()].sum();
+    }
+
+    /**
+     * Counts the SP, CN and TER points among point types that have just been assigned
+     * @param types types of the points, see LineCrafter.typeForConnectivity()
+     * @param pointCount number of points, the first pointCount entries are used
+     */
+    static void countPointTypes(int[] types, int pointCount) {
+        if (!enabled) {
+            return;
+        }
+        long sp = 0;
+        long cn = 0;
+        long ter = 0;
+        for (int id = 0; id < pointCount; id++) {
+            if (types[id] == 1) {
+                sp++;
+            } else if (types[id] == 3) {
+                cn++;
+            } else if (types[id] >= 6) {
+                ter++;
+            }
+        }
+        add(Counter.SP_POINTS, sp);
+        add(Counter.CN_POINTS, cn);
+        add(Counter.TER_POINTS, ter);
+    }
+
+    /**
+     * Writes a JSON summary of all phases and counters, and records it as a JFR event
+     * @param file file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeSummary(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(summaryJson());
+        }
+    }
+
+    /**
+     * Creates the summary of all phases and counters as JSON, and records it as a JFR event
+     * @return JSON object with the total wall time, the phases in the order of their first start and the counters
+     */
+    public static String summaryJson() {
+        RunSummaryEvent event = new RunSummaryEvent();
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"wallNanos\": ").append(System.nanoTime() - runStart).append(",\n  \"phases\": [");
+        ArrayList<PhaseTotal> phases;
+        synchronized (PHASES) {
+            phases = new ArrayList<>(PHASES.values());
+        }
+        for (int i = 0; i < phases.size(); i++) {
+            PhaseTotal phase = phases.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": \"").append(phase.name).append("\", \"calls\": ").append(phase.calls)
+                    .append(", \"wallNanos\": ").append(phase.wallNanos)
+                    .append(", \"allocatedBytes\": ").append(phase.allocatedBytes).append('}');
+        }
+        json.append(phases.isEmpty() ? "],\n" : "\n  ],\n").append("  \"counters\": {");
+        for (Counter counter : Counter.values()) {
+            json.append(counter.ordinal() == 0 ? "\n" : ",\n");
+            json.append("    \"").append(counter.key).append("\": ").append(get(counter));
+        }
+        json.append("\n  }\n}\n");
+
+        event.lines = get(Counter.LINES);
+        event.spPoints = get(Counter.SP_POINTS);
+        event.cnPoints = get(Counter.CN_POINTS);
+        event.terPoints = get(Counter.TER_POINTS);
+        event.polylines = get(Counter.POLYLINES);
+        event.closedLoops = get(Counter.CLOSED_LOOPS);
+        event.searchSteps = get(Counter.SEARCH_STEPS);
+        event.commit();
+        return json.toString();
+    }
+
+    /**
+     * Reads the bytes allocated by the current thread so far
+     * @return allocated bytes, or 0 if the JVM cannot measure them
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * A running phase. Closing it adds its wall time and allocation to the total of all phases with the same name.
+     */
+    public static class Phase implements AutoCloseable {
+
+        private final String name;
+        private final String outerPhase;
+        private final long start;
+        private final long allocationStart;
+        private final PhaseEvent event;
+
+        private Phase(String name) {
+            this.name = name;
+            if (name == null) {
+                outerPhase = null;
+                start = 0;
+                allocationStart = 0;
+                event = null;
+                return;
+            }
+            outerPhase = OPEN_PHASE.get();
+            OPEN_PHASE.set(name);
+            event = new PhaseEvent();
+            event.phase = name;
+            event.begin();
+            allocationStart = allocatedBytes();
+            start = System.nanoTime();
+        }
+
+        /**
+         * Ends the phase
+         */
+        @Override
+        public void close() {
+            if (name == null) {
+                return;
+            }
+            long wallNanos = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocationStart;
+            OPEN_PHASE.set(outerPhase);
+            event.allocatedBytes = allocated;
+            event.commit();
+            synchronized (PHASES) {
+                PhaseTotal total = PHASES.computeIfAbsent(name, PhaseTotal::new);
+                total.calls++;
+                total.wallNanos += wallNanos;
+                total.allocatedBytes += allocated;
+            }
+        }
+    }
+
+    /**
+     * Sum over all calls of a phase
+     */
+    private static class PhaseTotal {
+
+        private final String name;
+        private long calls;
+        private long wallNanos;
+        private long allocatedBytes;
+
+        PhaseTotal(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * JFR event for one call of a phase, its duration is the wall time
+     */
+    @Name("drawplot.Phase")
+    @Label("DrawPlot Phase")
+    @Category("DrawPlot")
+    static class PhaseEvent extends Event {
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocatedBytes;
+    }
+
+    /**
+     * JFR event with the counters of the run
+     */
+    @Name("drawplot.RunSummary")
+    @Label("DrawPlot Run Summary")
+    @Category("DrawPlot")
+    static class RunSummaryEvent extends Event {
+
+        @Label("Lines")
+        long lines;
+
+        @Label("SP Points")
+        long spPoints;
+
+        @Label("CN Points")
+        long cnPoints;
+
+        @Label("TER Points")
+        long terPoints;
+
+        @Label("Polylines")
+        long polylines;
+
+        @Label("Closed Loops")
+        long closedLoops;
+
+        @Label("Search Steps")
+        long searchSteps;
+    }
+}
@@ -0,0 +1,154 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Primitive storage for the coordinates of the lines from the input data.
+ * Instead of one ArrayList of Integers per line, the values x1, y1, x2, y2 of all lines are stored
+ * in four int arrays (columns), where index i belongs to line i of the input data.
+ * Lines of the input data that could not be read are not stored, but their line number and the reason
+ * are recorded, so that all malformed lines can be reported at once.
+ */
+public class SegmentCoordinates {
+
+    // coordinates of the first point of each line
+    private int[] x1;
+    private int[] y1;
+    // coordinates of the second point of each line
+    private int[] x2;
+    private int[] y2;
+    // number of lines stored
+    private int size;
+    // descriptions of the input lines that could not be read
+    private final ArrayList<String> malformedLines = new ArrayList<>();
+
+    //Constructor
+    public SegmentCoordinates(int expectedLines) {
+        int capacity = Math.max(16, expectedLines);
+        x1 = new int[capacity];
+        y1 = new int[capacity];
+        x2 = new int[capacity];
+        y2 = new int[capacity];
+    }
+
+    /**
+     * Creates the coordinates from columns that have already been filled, e.g. by SegmentFile.
+     * The arrays are used directly, without copying them.
+     * @param x1 x coordinate of the first point of each line
+     * @param y1 y coordinate of the first point of each line
+     * @param x2 x coordinate of the second point of each line
+     * @param y2 y coordinate of the second point of each line
+     * @param size number of lines, the first size entries of the arrays are used
+     */
+    public SegmentCoordinates(int[] x1, int[] y1, int[] x2, int[] y2, int size) {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.size = size;
+    }
+
+    /**
+     * Adds a line with the coordinates of its two points
+     * @param x1 x coordinate of the first point
+     * @param y1 y coordinate of the first point
+     * @param x2 x coordinate of the second point
+     * @param y2 y coordinate of the second point
+     */
+    public void add(int x1, int y1, int x2, int y2) {
+        if (size == this.x1.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            this.x1 = Arrays.copyOf(this.x1, capacity);
+            this.y1 = Arrays.copyOf(this.y1, capacity);
+            this.x2 = Arrays.copyOf(this.x2, capacity);
+            this.y2 = Arrays.copyOf(this.y2, capacity);
+        }
+        this.x1[size] = x1;
+        this.y1[size] = y1;
+        this.x2[size] = x2;
+        this.y2[size] = y2;
+        size++;
+    }
+
+    /**
+     * Records a line of the input data that could not be read
+     * @param lineNumber line number in the input data, starting with 1
+     * @param reason description of the problem
+     */
+    public void addMalformedLine(long lineNumber, String reason) {
+        malformedLines.add("line " + lineNumber + ": " + reason);
+    }
+
+    /**
+     * Getter for the number of lines
+     * @return number of lines that have been read successfully
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter for x coordinate of the first point of a line
+     * @param line index of the line
+     * @return x1
+     */
+    public int getX1(int line) {
+        return x1[line];
+    }
+
+    /**
+     * Getter for y coordinate of the first point of a line
+     * @param line index of the line
+     * @return y1
+     */
+    public int getY1(int line) {
+        return y1[line];
+    }
+
+    /**
+     * Getter for x coordinate of the second point of a line
+     * @param line index of the line
+     * @return x2
+     */
+    public int getX2(int line) {
+        return x2[line];
+    }
+
+    /**
+     * Getter for y coordinate of the second point of a line
+     * @param line index of the line
+     * @return y2
+     */
+    public int getY2(int line) {
+        return y2[line];
+    }
+
+    /**
+     * Getter for the lines of the input data that could not be read
+     * @return descriptions of the malformed lines, each with its line number
+     */
+    public List<String> getMalformedLines() {
+        return malformedLines;
+    }
+
+    /**
+     * Converts the coordinates to the format of InputHandler.readCoordinates()
+     * @return 2d ArrayList, with every inner list representing one line with the values x1, y1, x2, y2
+     */
+    public ArrayList<ArrayList<Integer>> toRawCoordinates() {
+        ArrayList<ArrayList<Integer>> rawCoordinates = new ArrayList<>(size);
+        for (int line = 0; line < size; line++) {
+            rawCoordinates.add(new ArrayList<>(Arrays.asList(x1[line], y1[line], x2[line], y2[line])));
+        }
+        return rawCoordinates;
+    }
+
+    /**
+     * Characterizes one line in the same way as an inner list of InputHandler.readCoordinates()
+     * @param line index of the line
+     * @return representation of the line as a String, e.g. [282, 580, 44, 362]
+     */
+    public String lineToString(int line) {
+        return "[" + x1[line] + ", " + y1[line] + ", " + x2[line] + ", " + y2[line] + "]";
+    }
+}
@@ -0,0 +1,318 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Compact binary format for the lines of the input data, so that a large input does not have to be parsed
+ * as text again and again. Convert the text file once (see convert()) and read the binary file with
+ * InputHandler.readCoordinatesMapped(), which recognizes it by its first bytes.
+ * The file starts with a header:
+ * magic "DPSG", format version, number of lines, lines per block, number of blocks (each an int), followed by
+ * the file position of each block and the end of the file (each a long).
+ * The lines are stored in blocks of BLOCK_LINES lines. Each block contains the columns x1, y1, x2, y2 of its
+ * lines one after another. x1 and y1 are stored as the difference to the value of the previous line in the block,
+ * x2 and y2 as the difference to x1 and y1 of the same line, because both points of a line are usually close.
+ * Each difference is written as a zigzag varint (1 byte for differences from -64 to 63, at most 5 bytes).
+ * The blocks are independent of each other, so they are decoded in parallel on the common ForkJoinPool,
+ * directly from the mapped file into the int arrays of a SegmentCoordinates.
+ */
+public class SegmentFile {
+
+    // first bytes of a binary segment file, "DPSG"
+    public static final int MAGIC = 0x44505347;
+    // version of the format, increased with each incompatible change
+    public static final int VERSION = 1;
+    // number of lines per block
+    static final int BLOCK_LINES = 1 << 16;
+    // size of the header without the block positions
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+    // blocks per decoding task, so that a task maps and decodes about a million lines
+    private static final int BLOCKS_PER_TASK = 16;
+
+    private SegmentFile() {
+    }
+
+    /**
+     * Converts an input file in the text format of input.txt to the binary format.
+     * Malformed lines of the text file are reported and skipped (see InputHandler.readCoordinatesMapped()).
+     * @param textFile filename of the text input data
+     * @param binaryFile filename of the binary file to write
+     * @return number of lines written
+     * @throws IOException if the binary file cannot be written
+     */
+    public static int convert(String textFile, String binaryFile) throws IOException {
+        SegmentCoordinates coordinates = new InputHandler().readCoordinatesMapped(textFile);
+        write(coordinates, Paths.get(binaryFile));
+        return coordinates.size();
+    }
+
+    /**
+     * Writes lines in the binary format
+     * @param coordinates lines to write
+     * @param file file to write, an existing file is replaced
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(SegmentCoordinates coordinates, Path file) throws IOException {
+        int lineCount = coordinates.size();
+        int blockCount = (lineCount + BLOCK_LINES - 1) / BLOCK_LINES;
+        long[] blockPositions = new long[blockCount + 1];
+        int headerSize = HEADER_SIZE + (blockCount + 1) * Long.BYTES;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            // blocks first, the header with the block positions is written at the end
+            byte[] block = new byte[4 * 5 * BLOCK_LINES];
+            long position = headerSize;
+            for (int blockIndex = 0; blockIndex < blockCount; blockIndex++) {
+                blockPositions[blockIndex] = position;
+                int length = encodeBlock(coordinates, blockIndex * BLOCK_LINES,
+                        Math.min(lineCount, (blockIndex + 1) * BLOCK_LINES), block);
+                writeFully(channel, ByteBuffer.wrap(block, 0, length), position);
+                position += length;
+            }
+            blockPositions[blockCount] = position;
+
+            ByteBuffer header = ByteBuffer.allocate(headerSize);
+            header.putInt(MAGIC).putInt(VERSION).putInt(lineCount).putInt(BLOCK_LINES).putInt(blockCount);
+            for (long blockPosition : blockPositions) {
+                header.putLong(blockPosition);
+            }
+            header.flip();
+            writeFully(channel, header, 0);
+        }
+    }
+
+    /**
+     * Checks whether a file starts like a binary segment file
+     * @param channel opened file
+     * @return true if the file starts with the magic bytes
+     * @throws IOException if the file cannot be read
+     */
+    static boolean isSegmentFile(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+        while (magic.hasRemaining() && channel.read(magic, magic.position()) >= 0) {
+            // read until the magic bytes are complete
+        }
+        return magic.getInt(0) == MAGIC;
+    }
+
+    /**
+     * Reads all lines of a binary segment file. The blocks are mapped into memory and decoded in parallel.
+     * @param channel opened binary segment file
+     * @return coordinates of all lines
+     * @throws IOException if the file cannot be read or is not a valid binary segment file
+     */
+    static SegmentCoordinates read(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE) {
+            throw new IOException("File is too short for a binary segment file");
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("File is no binary segment file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of the binary segment file, expected " + VERSION);
+        }
+        int lineCount = header.getInt();
+        int blockLines = header.getInt();
+        int blockCount = header.getInt();
+        if (lineCount < 0 || blockLines <= 0 || blockCount != (int) ((lineCount + (long) blockLines - 1) / blockLines)
+                || HEADER_SIZE + (blockCount + 1L) * Long.BYTES > fileSize) {
+            throw new IOException("Corrupt header of the binary segment file");
+        }
+        ByteBuffer positionBuffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (blockCount + 1L) * Long.BYTES);
+        long[] blockPositions = new long[blockCount + 1];
+        for (int blockIndex = 0; blockIndex <= blockCount; blockIndex++) {
+            blockPositions[blockIndex] = positionBuffer.getLong();
+            if (blockPositions[blockIndex] > fileSize || blockIndex > 0 && blockPositions[blockIndex] < blockPositions[blockIndex - 1]) {
+                throw new IOException("Corrupt block positions in the binary segment file");
+            }
+        }
+
+        int[] x1 = new int[lineCount];
+        int[] y1 = new int[lineCount];
+        int[] x2 = new int[lineCount];
+        int[] y2 = new int[lineCount];
+        try {
+            ForkJoinPool.commonPool().invoke(new DecodeTask(channel, blockPositions, blockLines, lineCount,
+                    new int[][] {x1, y1, x2, y2}, 0, blockCount));
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        return new SegmentCoordinates(x1, y1, x2, y2, lineCount);
+    }
+
+    /**
+     * Encodes the lines of one block
+     * @param coordinates all lines
+     * @param from index of the first line of the block
+     * @param to index after the last line of the block
+     * @param block receives the bytes of the block
+     * @return number of bytes of the block
+     */
+    private static int encodeBlock(SegmentCoordinates coordinates, int from, int to, byte[] block) {
+        int length = 0;
+        int previous = 0;
+        for (int line = from; line < to; line++) {
+            length = writeVarint(block, length, coordinates.getX1(line) - previous);
+            previous = coordinates.getX1(line);
+        }
+        previous = 0;
+        for (int line = from; line < to; line++) {
+            length = writeVarint(block, length, coordinates.getY1(line) - previous);
+            previous = coordinates.getY1(line);
+        }
+        for (int line = from; line < to; line++) {
+            length = writeVarint(block, length, coordinates.getX2(line) - coordinates.getX1(line));
+        }
+        for (int line = from; line < to; line++) {
+            length = writeVarint(block, length, coordinates.getY2(line) - coordinates.getY1(line));
+        }
+        return length;
+    }
+
+    /**
+     * Writes a difference as zigzag varint: 7 bits per byte, the highest bit marks that another byte follows.
+     * The difference may overflow, the reader adds it with the same overflow.
+     * @param bytes receives the bytes
+     * @param position position of the first byte
+     * @param difference value to write
+     * @return position after the last byte
+     */
+    private static int writeVarint(byte[] bytes, int position, int difference) {
+        int value = (difference << 1) ^ (difference >> 31);
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Task that decodes a range of blocks, large ranges are split in halves and decoded in parallel.
+     */
+    private static class DecodeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] blockPositions;
+        private final int blockLines;
+        private final int lineCount;
+        // x1, y1, x2, y2 of all lines
+        private final int[][] columns;
+        private final int fromBlock;
+        private final int toBlock;
+
+        DecodeTask(FileChannel channel, long[] blockPositions, int blockLines, int lineCount, int[][] columns,
+                   int fromBlock, int toBlock) {
+            this.channel = channel;
+            this.blockPositions = blockPositions;
+            this.blockLines = blockLines;
+            this.lineCount = lineCount;
+            this.columns = columns;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock > BLOCKS_PER_TASK) {
+                int middle = (fromBlock + toBlock) >>> 1;
+                invokeAll(new DecodeTask(channel, blockPositions, blockLines, lineCount, columns, fromBlock, middle),
+                        new DecodeTask(channel, blockPositions, blockLines, lineCount, columns, middle, toBlock));
+                return;
+            }
+            if (fromBlock == toBlock) {
+                return;
+            }
+            try {
+                long start = blockPositions[fromBlock];
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, blockPositions[toBlock] - start);
+                // each block is copied into an array first, decoding from an array is much faster than from the buffer
+                byte[] bytes = new byte[4 * 5 * blockLines];
+                for (int blockIndex = fromBlock; blockIndex < toBlock; blockIndex++) {
+                    long length = blockPositions[blockIndex + 1] - blockPositions[blockIndex];
+                    if (length > bytes.length) {
+                        throw new IOException("Corrupt block " + blockIndex + " in the binary segment file");
+                    }
+                    buffer.get(bytes, 0, (int) length);
+                    int from = blockIndex * blockLines;
+                    int to = (int) Math.min(lineCount, (long) from + blockLines);
+                    if (decodeBlock(bytes, (int) length, from, to) != length) {
+                        throw new IOException("Corrupt block " + blockIndex + " in the binary segment file");
+                    }
+                }
+            } catch (IOException IOexception) {
+                throw new UncheckedIOException(IOexception);
+            }
+        }
+
+        /**
+         * Decodes the lines of one block into the columns
+         * @param bytes bytes of the block
+         * @param length number of bytes of the block
+         * @param from index of the first line of the block
+         * @param to index after the last line of the block
+         * @return number of bytes decoded
+         * @throws IOException if a varint runs past the end of the block
+         */
+        private int decodeBlock(byte[] bytes, int length, int from, int to) throws IOException {
+            int position = 0;
+            for (int column = 0; column < 4; column++) {
+                int[] values = columns[column];
+                // x1 and y1 continue from the previous line, x2 and y2 from x1 and y1 of the same line
+                int[] base = column >= 2 ? columns[column - 2] : null;
+                int previous = 0;
+                for (int line = from; line < to; line++) {
+                    if (position >= length) {
+                        throw new IOException("Corrupt varint at line " + line + " in the binary segment file");
+                    }
+                    int value = bytes[position++];
+                    if (value < 0) {
+                        // more than one byte
+                        value &= 0x7F;
+                        int shift = 7;
+                        byte b;
+                        do {
+                            if (position >= length || shift > 28) {
+                                throw new IOException("Corrupt varint at line " + line + " in the binary segment file");
+                            }
+                            b = bytes[position++];
+                            value |= (b & 0x7F) << shift;
+                            shift += 7;
+                        } while (b < 0);
+                    }
+                    int difference = (value >>> 1) ^ -(value & 1);
+                    if (base != null) {
+                        values[line] = base[line] + difference;
+                    } else {
+                        previous += difference;
+                        values[line] = previous;
+                    }
+                }
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+import java.util.Arrays;
+
+/**
+ * Spatial index over the lines (segments) of polylines, for LevelOfDetailChart: finds the lines that can be seen
+ * in a viewport without looking at every line of every polyline.
+ * The range of all points is divided into a uniform grid of cells. Each line is entered into every cell that its
+ * bounding box overlaps, and the entries of all cells are kept in one array, sorted by cell (offsets per cell, as
+ * in SegmentStore). A query only reads the cells that overlap the viewport.
+ * A line whose bounding box covers more than MAX_CELLS_PER_LINE cells is not entered into the cells, but kept
+ * in a separate list that is checked by every query, so that a few very long lines do not fill the whole grid.
+ * A line is identified by the index of its polyline and the position of its first point in the polyline.
+ * A polyline with a single point has one line from the point to itself.
+ */
+public class SegmentGrid {
+
+    // average number of lines per cell the grid is sized for
+    private static final int LINES_PER_CELL = 4;
+    // maximal number of cells in each direction
+    private static final int MAX_CELLS_PER_AXIS = 1024;
+    // lines that overlap more cells are kept in the separate list
+    private static final int MAX_CELLS_PER_LINE = 64;
+
+    // x and y coordinates of the points of each polyline
+    private final double[][] xData;
+    private final double[][] yData;
+    // range of all points
+    private final double minX;
+    private final double minY;
+    // number of cells in each direction and their size
+    private final int columns;
+    private final int rows;
+    private final double cellWidth;
+    private final double cellHeight;
+    // entries of cell c are cellEntries[cellStart[c]] to cellEntries[cellStart[c + 1] - 1]
+    private final int[] cellStart;
+    private final long[] cellEntries;
+    // lines that overlap too many cells
+    private final long[] longLines;
+
+    /**
+     * Builds the grid over all lines of the polylines
+     * @param xData x coordinates of the points of each polyline
+     * @param yData y coordinates of the points of each polyline
+     * @param minX smallest x value of all points
+     * @param maxX largest x value of all points
+     * @param minY smallest y value of all points
+     * @param maxY largest y value of all points
+     */
+    public SegmentGrid(double[][] xData, double[][] yData, double minX, double maxX, double minY, double maxY) {
+        this.xData = xData;
+        this.yData = yData;
+        this.minX = minX;
+        this.minY = minY;
+
+        long lineCount = 0;
+        for (double[] x : xData) {
+            lineCount += lineCount(x);
+        }
+        int cellsPerAxis = (int) Math.max(1, Math.min(MAX_CELLS_PER_AXIS, Math.sqrt((double) lineCount / LINES_PER_CELL)));
+        // a range without extent gets a single cell in that direction
+        columns = maxX > minX ? cellsPerAxis : 1;
+        rows = maxY > minY ? cellsPerAxis : 1;
+        cellWidth = maxX > minX ? (maxX - minX) / columns : 1;
+        cellHeight = maxY > minY ? (maxY - minY) / rows : 1;
+
+        // first pass: count the entries of each cell, second pass: fill them in
+        cellStart = new int[columns * rows + 1];
+        int longLineCount = 0;
+        for (int polyline = 0; polyline < xData.length; polyline++) {
+            for (int line = 0; line < lineCount(xData[polyline]); line++) {
+                int[] cells = cellRange(polyline, line);
+                if (isLong(cells)) {
+                    longLineCount++;
+                    continue;
+                }
+                for (int row = cells[2]; row <= cells[3]; row++) {
+                    for (int column = cells[0]; column <= cells[1]; column++) {
+                        cellStart[row * columns + column + 1]++;
+                    }
+                }
+            }
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellEntries = new long[cellStart[columns * rows]];
+        longLines = new long[longLineCount];
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        longLineCount = 0;
+        for (int polyline = 0; polyline < xData.length; polyline++) {
+            for (int line = 0; line < lineCount(xData[polyline]); line++) {
+                int[] cells = cellRange(polyline, line);
+                long entry = entry(polyline, line);
+                if (isLong(cells)) {
+                    longLines[longLineCount++] = entry;
+                    continue;
+                }
+                for (int row = cells[2]; row <= cells[3]; row++) {
+                    for (int column = cells[0]; column <= cells[1]; column++) {
+                        cellEntries[fill[row * columns + column]++] = entry;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds all lines whose bounding box overlaps the viewport, like PolylineDecimator checks the visibility of a line
+     * @param viewMinX smallest visible x value
+     * @param viewMaxX largest visible x value
+     * @param viewMinY smallest visible y value
+     * @param viewMaxY largest visible y value
+     * @return the visible lines, sorted by polyline and then by position in the polyline, without duplicates.
+     *         Use polylineOf() and lineOf() to read an entry.
+     */
+    public long[] visibleLines(double viewMinX, double viewMaxX, double viewMinY, double viewMaxY) {
+        long[] visible = new long[64];
+        int size = 0;
+        int firstColumn = clamp(Math.floor((viewMinX - minX) / cellWidth), columns);
+        int lastColumn = clamp(Math.floor((viewMaxX - minX) / cellWidth), columns);
+        int firstRow = clamp(Math.floor((viewMinY - minY) / cellHeight), rows);
+        int lastRow = clamp(Math.floor((viewMaxY - minY) / cellHeight), rows);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = row * columns + column;
+                for (int position = cellStart[cell]; position < cellStart[cell + 1]; position++) {
+                    long entry = cellEntries[position];
+                    if (overlaps(entry, viewMinX, viewMaxX, viewMinY, viewMaxY)) {
+                        if (size == visible.length) {
+                            visible = Arrays.copyOf(visible, size * 2);
+                        }
+                        visible[size++] = entry;
+                    }
+                }
+            }
+        }
+        for (long entry : longLines) {
+            if (overlaps(entry, viewMinX, viewMaxX, viewMinY, viewMaxY)) {
+                if (size == visible.length) {
+                    visible = Arrays.copyOf(visible, size * 2);
+                }
+                visible[size++] = entry;
+            }
+        }
+
+        // a line that lies in several visible cells has been found several times
+        Arrays.sort(visible, 0, size);
+        int unique = 0;
+        for (int position = 0; position < size; position++) {
+            if (unique == 0 || visible[unique - 1] != visible[position]) {
+                visible[unique++] = visible[position];
+            }
+        }
+        return Arrays.copyOf(visible, unique);
+    }
+
+    /**
+     * Reads the polyline of an entry returned by visibleLines()
+     * @param entry entry of a line
+     * @return index of the polyline
+     */
+    public static int polylineOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    /**
+     * Reads the line of an entry returned by visibleLines()
+     * @param entry entry of a line
+     * @return position of the first point of the line in its polyline
+     */
+    public static int lineOf(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Packs a line into an entry, so that entries are sorted by polyline and then by line
+     */
+    private static long entry(int polyline, int line) {
+        return (long) polyline << 32 | line;
+    }
+
+    /**
+     * Number of lines of a polyline, a single point counts as one line
+     * @param x x coordinates of the polyline
+     * @return number of lines
+     */
+    private static int lineCount(double[] x) {
+        return x.length == 1 ? 1 : Math.max(0, x.length - 1);
+    }
+
+    /**
+     * Finds the cells that the bounding box of a line overlaps
+     * @param polyline index of the polyline
+     * @param line position of the first point of the line
+     * @return first column, last column, first row and last row
+     */
+    private int[] cellRange(int polyline, int line) {
+        double[] x = xData[polyline];
+        double[] y = yData[polyline];
+        int next = Math.min(line + 1, x.length - 1);
+        return new int[] {
+                clamp(Math.floor((Math.min(x[line], x[next]) - minX) / cellWidth), columns),
+                clamp(Math.floor((Math.max(x[line], x[next]) - minX) / cellWidth), columns),
+                clamp(Math.floor((Math.min(y[line], y[next]) - minY) / cellHeight), rows),
+                clamp(Math.floor((Math.max(y[line], y[next]) - minY) / cellHeight), rows)};
+    }
+
+    /**
+     * Checks whether a cell range is too large to enter the line into each cell
+     */
+    private static boolean isLong(int[] cells) {
+        return (long) (cells[1] - cells[0] + 1) * (cells[3] - cells[2] + 1) > MAX_CELLS_PER_LINE;
+    }
+
+    /**
+     * Checks whether the bounding box of a line overlaps the viewport
+     */
+    private boolean overlaps(long entry, double viewMinX, double viewMaxX, double viewMinY, double viewMaxY) {
+        double[] x = xData[polylineOf(entry)];
+        double[] y = yData[polylineOf(entry)];
+        int line = lineOf(entry);
+        int next = Math.min(line + 1, x.length - 1);
+        return Math.max(x[line], x[next]) >= viewMinX && Math.min(x[line], x[next]) <= viewMaxX
+                && Math.max(y[line], y[next]) >= viewMinY && Math.min(y[line], y[next]) <= viewMaxY;
+    }
+
+    /**
+     * Limits a cell position to the grid, values outside of the range of all points belong to the border cells
+     * @param position cell position, may be outside of the grid
+     * @param cells number of cells in this direction
+     * @return position between 0 and cells - 1
+     */
+    private static int clamp(double position, int cells) {
+        if (!(position > 0)) {
+            return 0;
+        }
+        return (int) Math.min(cells - 1, position);
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.Arrays;
+
+/**
+ * Compact storage for all lines of the input data, as an alternative to the starter list of LineCrafter.
+ * Instead of one ArrayList with two Point objects per line, the store keeps its data in primitive columns:
+ * - for each line the ids of its two points (int arrays)
+ * - for each point id its packed x,y coordinates (long array, see Point.packKey())
+ * - for each point id its type (int array, see Point class)
+ * Each distinct x,y coordinate pair is stored only once, so the point ids play the role of the SPandCNandTER list.
+ * Ids are handed out in the order of the first occurrence of the points in the input data,
+ * which is also the order of the points in SPandCNandTER.
+ * A line needs 8 bytes and a point about 20 bytes, so that tens of millions of lines fit into a normal heap.
+ * LineCrafter can assign the types, build the LineIncidenceIndex and craft the polylines directly on this store.
+ */
+public class SegmentStore {
+
+    // ids and coordinates of the points
+    private final PointKeyTable points;
+    // type of each point
+    private int[] pointTypes;
+    // ids of the two points of each line
+    private int[] lineStart;
+    private int[] lineEnd;
+    // number of lines stored
+    private int lineCount;
+
+    //Constructor
+    public SegmentStore(int expectedLines) {
+        int capacity = Math.max(16, expectedLines);
+        points = new PointKeyTable(capacity);
+        pointTypes = new int[capacity];
+        lineStart = new int[capacity];
+        lineEnd = new int[capacity];
+    }
+
+    /**
+     * Creates a store from columns that have already been filled, e.g. by ParallelIngestion.
+     * The table and the arrays are used directly, without copying them.
+     * @param points ids and coordinates of the points, ids in the order of their first occurrence
+     * @param pointTypes type of each point, at least as long as points.size()
+     * @param lineStart id of the first point of each line
+     * @param lineEnd id of the second point of each line
+     * @param lineCount number of lines, the first lineCount entries of the line arrays are used
+     */
+    SegmentStore(PointKeyTable points, int[] pointTypes, int[] lineStart, int[] lineEnd, int lineCount) {
+        this.points = points;
+        this.pointTypes = pointTypes;
+        this.lineStart = lineStart;
+        this.lineEnd = lineEnd;
+        this.lineCount = lineCount;
+    }
+
+    /**
+     * Creates a store for the lines read by InputHandler.readCoordinatesMapped().
+     * The points have type 99 (no type assigned yet), like in LineCrafter.createStarterList().
+     * @param coordinates x1, y1, x2, y2 of all lines
+     * @return store with all lines of the coordinates in the same order
+     */
+    public static SegmentStore fromCoordinates(SegmentCoordinates coordinates) {
+        SegmentStore store = new SegmentStore(coordinates.size());
+        for (int line = 0; line < coordinates.size(); line++) {
+            store.addLine(coordinates.getX1(line), coordinates.getY1(line), coordinates.getX2(line), coordinates.getY2(line));
+        }
+        return store;
+    }
+
+    /**
+     * Adds a line. Points that have not been stored before receive the next free id and type 99.
+     * @param x1 x coordinate of the first point
+     * @param y1 y coordinate of the first point
+     * @param x2 x coordinate of the second point
+     * @param y2 y coordinate of the second point
+     * @return id of the line
+     */
+    public int addLine(int x1, int y1, int x2, int y2) {
+        if (lineCount == lineStart.length) {
+            int capacity = lineCount + (lineCount >> 1);
+            lineStart = Arrays.copyOf(lineStart, capacity);
+            lineEnd = Arrays.copyOf(lineEnd, capacity);
+        }
+        lineStart[lineCount] = pointId(Point.packKey(x1, y1));
+        lineEnd[lineCount] = pointId(Point.packKey(x2, y2));
+        return lineCount++;
+    }
+
+    /**
+     * Looks up the id of a point and adds the point if it is not stored yet.
+     * @param key packed x,y coordinates
+     * @return id of the point
+     */
+    private int pointId(long key) {
+        int before = points.size();
+        int id = points.idOf(key);
+        if (id == before) {
+            if (id == pointTypes.length) {
+                pointTypes = Arrays.copyOf(pointTypes, id + (id >> 1));
+            }
+            pointTypes[id] = 99;
+        }
+        return id;
+    }
+
+    /**
+     * Getter for the number of lines
+     * @return number of lines, ids of lines range from 0 to lineCount()-1
+     */
+    public int lineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Getter for the number of distinct points
+     * @return number of points, ids of points range from 0 to pointCount()-1
+     */
+    public int pointCount() {
+        return points.size();
+    }
+
+    /**
+     * Getter for the first point of a line
+     * @param line id of the line
+     * @return id of the first point
+     */
+    public int lineStart(int line) {
+        return lineStart[line];
+    }
+
+    /**
+     * Getter for the second point of a line
+     * @param line id of the line
+     * @return id of the second point
+     */
+    public int lineEnd(int line) {
+        return lineEnd[line];
+    }
+
+    /**
+     * Getter for the packed coordinates of a point
+     * @param pointId id of the point
+     * @return packed x,y coordinates (see Point.packKey())
+     */
+    public long pointKey(int pointId) {
+        return points.key(pointId);
+    }
+
+    /**
+     * Looks up a point by its coordinates
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return id of the point, or -1 if there is no point with these coordinates
+     */
+    public int indexOf(int x, int y) {
+        return points.indexOf(Point.packKey(x, y));
+    }
+
+    /**
+     * Getter for the type of a point
+     * @param pointId id of the point
+     * @return type of the point (see Point class)
+     */
+    public int getType(int pointId) {
+        return pointTypes[pointId];
+    }
+
+    /**
+     * Setter for the type of a point
+     * @param pointId id of the point
+     * @param type new value for the point type
+     */
+    public void setType(int pointId, int type) {
+        pointTypes[pointId] = type;
+    }
+
+    /**
+     * Creates a Point object for a point of the store, e.g. for printing or plotting.
+     * @param pointId id of the point
+     * @return new point with the coordinates and the current type of the point
+     */
+    public Point toPoint(int pointId) {
+        long key = points.key(pointId);
+        return new Point(Point.keyX(key), Point.keyY(key), pointTypes[pointId]);
+    }
+
+    /**
+     * Direct access to the column with the first point of each line. The array can be longer than lineCount().
+     * @return ids of the first points
+     */
+    int[] lineStartColumn() {
+        return lineStart;
+    }
+
+    /**
+     * Direct access to the column with the second point of each line. The array can be longer than lineCount().
+     * @return ids of the second points
+     */
+    int[] lineEndColumn() {
+        return lineEnd;
+    }
+
+    /**
+     * Direct access to the column with the type of each point. The array can be longer than pointCount().
+     * @return types of the points
+     */
+    int[] typeColumn() {
+        return pointTypes;
+    }
+}
@@ -0,0 +1,318 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts more records than fit into the heap (external merge sort), for ExternalPolylineCrafter.
+ * A record consists of a fixed number of long fields and records are sorted by their fields in order,
+ * e.g. by point key and then by the position of the point in the input data.
+ * The records are collected in a buffer of limited size. Whenever the buffer is full, it is sorted and written
+ * to a spill file (a sorted run). At the end, the runs are merged and the records are read back in sorted order
+ * with a Cursor. If there are more runs than can be merged at once with the memory, groups of runs are merged
+ * into larger runs first.
+ * The spill files are written to the given directory and deleted by close().
+ */
+public class SpillSorter implements AutoCloseable {
+
+    // size of the read and write buffer of each spill file
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    // directory for the spill files
+    private final Path directory;
+    // prefix of the names of the spill files
+    private final String name;
+    // number of long fields per record
+    private final int width;
+    // maximal number of runs that are merged at once
+    private final int maxMergedRuns;
+    // records of the current run, and a second array of the same size for sorting them
+    private long[] buffer;
+    private long[] sortBuffer;
+    // number of records in the buffer
+    private int bufferedRecords;
+    // spill files with their number of records
+    private final ArrayList<Path> runs = new ArrayList<>();
+    private final ArrayList<Long> runLengths = new ArrayList<>();
+    // number of records added
+    private long size;
+
+    /**
+     * Creates a sorter
+     * @param directory directory for the spill files
+     * @param name prefix of the names of the spill files
+     * @param width number of long fields per record
+     * @param memoryBytes memory for the buffer of the sorter, at least enough for 1024 records
+     */
+    public SpillSorter(Path directory, String name, int width, long memoryBytes) {
+        if (width < 1) {
+            throw new IllegalArgumentException("width must be at least 1, but is " + width);
+        }
+        this.directory = directory;
+        this.name = name;
+        this.width = width;
+        // the records are held twice while they are sorted
+        long records = Math.max(1024, memoryBytes / (2L * Long.BYTES * width));
+        int bufferRecords = (int) Math.min((Integer.MAX_VALUE - 8) / width, records);
+        buffer = new long[bufferRecords * width];
+        sortBuffer = new long[bufferRecords * width];
+        maxMergedRuns = (int) Math.max(2, Math.min(1024, memoryBytes / (2L * IO_BUFFER_SIZE)));
+    }
+
+    /**
+     * Adds a record with two fields
+     * @param first first field
+     * @param second second field
+     * @throws IOException if the buffer is full and cannot be spilled
+     */
+    public void add(long first, long second) throws IOException {
+        if (bufferedRecords * width == buffer.length) {
+            spill();
+        }
+        int position = bufferedRecords++ * width;
+        buffer[position] = first;
+        buffer[position + 1] = second;
+        size++;
+    }
+
+    /**
+     * Adds a record with three fields
+     * @param first first field
+     * @param second second field
+     * @param third third field
+     * @throws IOException if the buffer is full and cannot be spilled
+     */
+    public void add(long first, long second, long third) throws IOException {
+        if (bufferedRecords * width == buffer.length) {
+            spill();
+        }
+        int position = bufferedRecords++ * width;
+        buffer[position] = first;
+        buffer[position + 1] = second;
+        buffer[position + 2] = third;
+        size++;
+    }
+
+    /**
+     * Getter for the number of records
+     * @return number of records added so far
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Finishes the sorter and opens the records in sorted order. No more records can be added afterwards,
+     * and the buffers are released.
+     * @return cursor over all records in sorted order, it has to be closed after use
+     * @throws IOException if the spill files cannot be written or read
+     */
+    public Cursor sorted() throws IOException {
+        if (bufferedRecords > 0 || runs.isEmpty()) {
+            spill();
+        }
+        buffer = null;
+        sortBuffer = null;
+        // merge groups of runs until all remaining runs can be merged at once
+        while (runs.size() > maxMergedRuns) {
+            Path merged = Files.createTempFile(directory, name, ".run");
+            long mergedLength = 0;
+            try (Cursor cursor = new Cursor(new ArrayList<>(runs.subList(0, maxMergedRuns)),
+                    new ArrayList<>(runLengths.subList(0, maxMergedRuns)));
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(merged), IO_BUFFER_SIZE))) {
+                while (cursor.next()) {
+                    for (int field = 0; field < width; field++) {
+                        output.writeLong(cursor.get(field));
+                    }
+                    mergedLength++;
+                }
+            }
+            for (int run = 0; run < maxMergedRuns; run++) {
+                Files.deleteIfExists(runs.get(0));
+                runs.remove(0);
+                runLengths.remove(0);
+            }
+            runs.add(merged);
+            runLengths.add(mergedLength);
+        }
+        return new Cursor(runs, runLengths);
+    }
+
+    /**
+     * Deletes all spill files of the sorter
+     * @throws IOException if a file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        runLengths.clear();
+        buffer = null;
+        sortBuffer = null;
+    }
+
+    /**
+     * Sorts the records in the buffer and writes them as a new run
+     * @throws IOException if the spill file cannot be written
+     */
+    private void spill() throws IOException {
+        sortRecords();
+        Path run = Files.createTempFile(directory, name, ".run");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER_SIZE))) {
+            for (int position = 0; position < bufferedRecords * width; position++) {
+                output.writeLong(buffer[position]);
+            }
+        }
+        runs.add(run);
+        runLengths.add((long) bufferedRecords);
+        bufferedRecords = 0;
+    }
+
+    /**
+     * Sorts the records in the buffer with a bottom-up merge sort, which keeps the fields of a record together
+     */
+    private void sortRecords() {
+        long[] source = buffer;
+        long[] target = sortBuffer;
+        for (int runLength = 1; runLength < bufferedRecords; runLength *= 2) {
+            for (int from = 0; from < bufferedRecords; from += 2 * runLength) {
+                int middle = Math.min(from + runLength, bufferedRecords);
+                int to = Math.min(from + 2 * runLength, bufferedRecords);
+                int left = from;
+                int right = middle;
+                int position = from * width;
+                while (left < middle || right < to) {
+                    int record;
+                    if (right == to || left < middle && compare(source, left * width, source, right * width) <= 0) {
+                        record = left++;
+                    } else {
+                        record = right++;
+                    }
+                    for (int field = record * width, fieldEnd = field + width; field < fieldEnd; field++) {
+                        target[position++] = source[field];
+                    }
+                }
+            }
+            long[] swap = source;
+            source = target;
+            target = swap;
+        }
+        buffer = source;
+        sortBuffer = target;
+    }
+
+    /**
+     * Compares two records field by field
+     * @param a array with the first record
+     * @param aPosition position of the first field of the first record
+     * @param b array with the second record
+     * @param bPosition position of the first field of the second record
+     * @return negative, 0 or positive if the first record is smaller, equal or larger
+     */
+    private int compare(long[] a, int aPosition, long[] b, int bPosition) {
+        for (int field = 0; field < width; field++) {
+            int result = Long.compare(a[aPosition + field], b[bPosition + field]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Reads the records of several runs in sorted order, by merging the runs with a priority queue.
+     * The current record is available with get() after each successful call of next().
+     */
+    public class Cursor implements AutoCloseable {
+
+        private final ArrayList<Run> openRuns = new ArrayList<>();
+        private final PriorityQueue<Run> queue = new PriorityQueue<>((a, b) -> compare(a.record, 0, b.record, 0));
+        // run of the current record
+        private Run current;
+
+        private Cursor(ArrayList<Path> files, ArrayList<Long> lengths) throws IOException {
+            try {
+                for (int run = 0; run < files.size(); run++) {
+                    Run openRun = new Run(files.get(run), lengths.get(run));
+                    openRuns.add(openRun);
+                    if (openRun.advance()) {
+                        queue.add(openRun);
+                    }
+                }
+            } catch (IOException IOexception) {
+                close();
+                throw IOexception;
+            }
+        }
+
+        /**
+         * Moves to the next record
+         * @return true if there is a next record, false if all records have been read
+         * @throws IOException if a spill file cannot be read
+         */
+        public boolean next() throws IOException {
+            if (current != null && current.advance()) {
+                queue.add(current);
+            }
+            current = queue.poll();
+            return current != null;
+        }
+
+        /**
+         * Getter for a field of the current record
+         * @param field index of the field
+         * @return value of the field
+         */
+        public long get(int field) {
+            return current.record[field];
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Run run : openRuns) {
+                run.input.close();
+            }
+            openRuns.clear();
+            queue.clear();
+        }
+    }
+
+    /**
+     * Open spill file with its current record
+     */
+    private class Run {
+
+        private final DataInputStream input;
+        private final long[] record = new long[width];
+        // records that have not been read yet
+        private long remaining;
+
+        Run(Path file, long length) throws IOException {
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE));
+            remaining = length;
+        }
+
+        /**
+         * Reads the next record of the run
+         * @return true if a record has been read, false at the end of the run
+         * @throws IOException if the file cannot be read
+         */
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            for (int field = 0; field < width; field++) {
+                record[field] = input.readLong();
+            }
+            remaining--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Keeps only the K longest polylines while the polylines are being crafted.
+ * The kept polylines are stored in a bounded min-heap ordered by their length, so that the shortest
+ * kept polyline is at the root. A new polyline replaces the root if it is longer, otherwise it is dropped
+ * right away. Memory and sorting cost therefore depend on K and not on the total number of polylines.
+ * Polylines with the same length are ranked in the order in which they were crafted, like in PolylineRanking.
+ * Therefore among equally long polylines at the end of the heap, the earlier ones are kept.
+ */
+public class TopKPolylines implements PolylineSink {
+
+    // maximal number of polylines to keep
+    private final int k;
+    // heap of kept polylines: length, crafting number and polyline of each entry
+    private final double[] lengths;
+    private final long[] sequence;
+    private final ArrayList<ArrayList<Point>> linienzuege;
+    // number of entries in the heap
+    private int size;
+    // number of polylines received so far
+    private long received;
+
+    //Constructor
+    public TopKPolylines(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1, but is " + k);
+        }
+        this.k = k;
+        lengths = new double[k];
+        sequence = new long[k];
+        linienzuege = new ArrayList<>(k);
+    }
+
+    /**
+     * Receives a polyline and keeps it if it is among the K longest polylines so far
+     * @param linienzug polyline consisting of consecutive points
+     */
+    @Override
+    public void accept(ArrayList<Point> linienzug) {
+        double length = LineCrafter.calculateLength(linienzug);
+        long number = received++;
+
+        if (size < k) {
+            // heap not full yet: append and move up
+            lengths[size] = length;
+            sequence[size] = number;
+            linienzuege.add(linienzug);
+            siftUp(size++);
+        } else if (length > lengths[0]) {
+            // longer than the shortest kept polyline: replace the root and move down
+            lengths[0] = length;
+            sequence[0] = number;
+            linienzuege.set(0, linienzug);
+            siftDown(0);
+        }
+        // otherwise the polyline can not make the cut and is not retained
+    }
+
+    /**
+     * Getter for the number of polylines received so far
+     * @return number of polylines that have been handed to this sink
+     */
+    public long getReceived() {
+        return received;
+    }
+
+    /**
+     * Ranks the kept polylines by their length in descending order
+     * @return ranking of at most K polylines, the longest has rank 0
+     */
+    public PolylineRanking toRanking() {
+        // bring the kept polylines into their crafting order, so that equal lengths are ranked like in PolylineRanking
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(sequence[a], sequence[b]));
+
+        ArrayList<ArrayList<Point>> kept = new ArrayList<>(size);
+        double[] keptLengths = new double[size];
+        for (int i = 0; i < size; i++) {
+            kept.add(linienzuege.get(order[i]));
+            keptLengths[i] = lengths[order[i]];
+        }
+        return new PolylineRanking(kept, keptLengths);
+    }
+
+    /**
+     * Checks whether a heap entry is ranked behind another entry and therefore belongs closer to the root
+     * @param a position of the first entry
+     * @param b position of the second entry
+     * @return true if a is shorter than b, or if both have the same length and a was crafted later
+     */
+    private boolean worse(int a, int b) {
+        return lengths[a] < lengths[b] || (lengths[a] == lengths[b] && sequence[a] > sequence[b]);
+    }
+
+    /**
+     * Moves an entry up until its parent is not worse than the entry
+     * @param position position of the entry
+     */
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!worse(position, parent)) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    /**
+     * Moves an entry down until no child is worse than the entry
+     * @param position position of the entry
+     */
+    private void siftDown(int position) {
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && worse(child + 1, child)) {
+                child++;
+            }
+            if (!worse(child, position)) {
+                return;
+            }
+            swap(position, child);
+            position = child;
+        }
+    }
+
+    /**
+     * Swaps two heap entries
+     * @param a position of the first entry
+     * @param b position of the second entry
+     */
+    private void swap(int a, int b) {
+        double length = lengths[a];
+        lengths[a] = lengths[b];
+        lengths[b] = length;
+        long number = sequence[a];
+        sequence[a] = sequence[b];
+        sequence[b] = number;
+        ArrayList<Point> linienzug = linienzuege.get(a);
+        linienzuege.set(a, linienzuege.get(b));
+        linienzuege.set(b, linienzug);
+    }
+}